@@ -0,0 +1,99 @@
+package benchmarks;
+
+import bnsim.nodes.BNNode;
+import org.openjdk.jmh.annotations.*;
+import simAnneal.MoveJournal;
+import simAnneal.NeighbourGen;
+import simAnneal.Rng;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate generation with each NeighbourGen method, both as a randomised copy and applied in place through a
+ * MoveJournal that is rolled back after each invocation, drawing from a seeded Rng
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NeighbourGenBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int size;
+
+    @Param({"3"})
+    int neighbours;
+
+    TreeMap<String, BNNode> network;
+    MoveJournal journal;
+    Rng random;
+    int totalTruths;
+
+    @Setup
+    public void setup() {
+        network = Networks.generate(size, neighbours, Networks.SEED);
+        journal = new MoveJournal(network);
+        random = new Rng(Networks.SEED);
+        totalTruths = size << neighbours;
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> gen1() {
+        return NeighbourGen.gen1(network, 2, 4, random);
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> genRandFixed() {
+        return NeighbourGen.genRandFixed(network, 8, 4, random);
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> genRand() {
+        return NeighbourGen.genRand(network, 8, 4, random);
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> genRandGauss() {
+        return NeighbourGen.genRandGauss(network, totalTruths, 8, 2.0, 4, random);
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> randAllTruths() {
+        return NeighbourGen.randAllTruths(network, random);
+    }
+
+    @Benchmark
+    public int gen1InPlace() {
+        NeighbourGen.gen1(journal, 2, 4, random);
+        int count = journal.count();
+        journal.rollback();
+        return count;
+    }
+
+    @Benchmark
+    public int genRandFixedInPlace() {
+        NeighbourGen.genRandFixed(journal, 8, 4, random);
+        int count = journal.count();
+        journal.rollback();
+        return count;
+    }
+
+    @Benchmark
+    public int genRandInPlace() {
+        NeighbourGen.genRand(journal, 8, 4, random);
+        int count = journal.count();
+        journal.rollback();
+        return count;
+    }
+
+    @Benchmark
+    public int genRandGaussInPlace() {
+        NeighbourGen.genRandGauss(journal, totalTruths, 8, 2.0, 4, random);
+        int count = journal.count();
+        journal.rollback();
+        return count;
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import bnsim.generator.NetworkGen;
+import bnsim.nodes.BNNode;
+import bnsim.process.CompiledNetwork;
+import bnsim.process.FileOut;
+import org.openjdk.jmh.annotations.*;
+import simAnneal.Utility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Copying, parsing and loading networks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkIOBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int size;
+
+    @Param({"3"})
+    int neighbours;
+
+    TreeMap<String, BNNode> network;
+    String nodeString;
+    Path folder;
+    String savedFile;
+    String savedBinary;
+
+    @Setup
+    public void setup() throws IOException {
+        network = Networks.generate(size, neighbours, Networks.SEED);
+        nodeString = network.firstEntry().getValue().toString();
+
+        folder = Files.createTempDirectory("sa-bn-bench");
+        FileOut.output(network, "network", folder.toString());
+        savedFile = folder.resolve("network.txt").toString();
+        FileOut.outputBinary(network, "network", folder.toString());
+        savedBinary = folder.resolve("network.bnb").toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> copyNetwork() {
+        return Utility.copyNetwork(network);
+    }
+
+    @Benchmark
+    public BNNode valueOf() {
+        return BNNode.valueOf(nodeString);
+    }
+
+    @Benchmark
+    public TreeMap<String, BNNode> fileInput() {
+        return NetworkGen.fileInput(savedFile);
+    }
+
+    @Benchmark
+    public CompiledNetwork binaryInputCompiled() {
+        return NetworkGen.binaryInputCompiled(savedBinary);
+    }
+}
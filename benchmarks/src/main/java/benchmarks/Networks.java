@@ -0,0 +1,43 @@
+package benchmarks;
+
+import bnsim.generator.NetworkGen;
+import bnsim.nodes.BNNode;
+import simAnneal.Rng;
+
+import java.util.TreeMap;
+
+/**
+ * Reproducible networks and traces for benchmarks. Networks are built by NetworkGen.genRand from a seeded Rng so
+ * every benchmark run measures the same networks.
+ */
+public class Networks {
+    public static final long SEED = 20240601L;
+
+    /**
+     * Generates a seeded random network with numerically named nodes
+     * @param size number of nodes in network
+     * @param neighbours number of neighbour nodes per node
+     * @param seed random seed
+     * @return a TreeMap of String (node name) and BNNode pairs, representing the network
+     */
+    public static TreeMap<String, BNNode> generate(int size, int neighbours, long seed) {
+        return NetworkGen.genRand(size, neighbours, new Rng(seed));
+    }
+
+    /**
+     * Generates a seeded random desired trace in Objective's comma separated format
+     * @param size number of nodes in network
+     * @param steps number of iterations in the trace
+     * @param seed random seed
+     * @return String representation of the trace
+     */
+    public static String trace(int size, int steps, long seed) {
+        Rng random = new Rng(seed);
+        StringBuilder trace = new StringBuilder();
+        for (int t = 0; t < steps; t++) {
+            if (t > 0) trace.append(',');
+            for (int i = 0; i < size; i++) trace.append(random.nextBoolean() ? 1 : 0);
+        }
+        return trace.toString();
+    }
+}
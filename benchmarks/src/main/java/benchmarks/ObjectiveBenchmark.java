@@ -0,0 +1,56 @@
+package benchmarks;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.RunNetwork;
+import org.openjdk.jmh.annotations.*;
+import simAnneal.Objective;
+import simAnneal.Utility;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a network against a desired trace and a desired attractor. Each invocation resets the network to its initial
+ * state first, as the annealing loop does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectiveBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    @Param({"2", "3"})
+    int neighbours;
+
+    @Param({"10"})
+    int steps;
+
+    TreeMap<String, BNNode> network;
+    Map<String, Boolean> initialState;
+    String desiredTrace;
+
+    @Setup
+    public void setup() {
+        network = Networks.generate(size, neighbours, Networks.SEED);
+        initialState = RunNetwork.iterateMap(network, 0);
+        desiredTrace = Networks.trace(size, steps, Networks.SEED);
+    }
+
+    @Benchmark
+    public int scoreNetwork() {
+        Utility.setState(network, initialState);
+        return Objective.scoreNetwork(network, desiredTrace);
+    }
+
+    @Benchmark
+    public int scoreNet2() {
+        Utility.setState(network, initialState);
+        return Objective.scoreNet2(network, desiredTrace);
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.CompiledNetwork;
+import bnsim.process.RunNetwork;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One synchronous network iteration, on the TreeMap form (RunNetwork.iterateNet through iterateBitSet) and on the
+ * compiled form
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunNetworkBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    int size;
+
+    @Param({"2", "3", "5"})
+    int neighbours;
+
+    TreeMap<String, BNNode> network;
+    CompiledNetwork compiled;
+
+    @Setup
+    public void setup() {
+        network = Networks.generate(size, neighbours, Networks.SEED);
+        compiled = CompiledNetwork.compile(network);
+    }
+
+    @Benchmark
+    public BitSet iterateNet() {
+        return RunNetwork.iterateBitSet(network, 1);
+    }
+
+    @Benchmark
+    public long[] iterateCompiled() {
+        compiled.iterate(1);
+        return compiled.state();
+    }
+}
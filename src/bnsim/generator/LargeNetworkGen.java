@@ -0,0 +1,338 @@
+package bnsim.generator;
+
+import bnsim.process.BinaryFormat;
+import bnsim.process.CompiledNetwork;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded generator for very large random Boolean networks, built straight into compiled form or streamed to the binary
+ * format without ever creating BNNodes.
+ * <p>
+ * Every random draw for a node comes from a generator seeded by the network seed, the node's index and what is being
+ * drawn (in-degree, neighbours, truth table or state), so each part of each node can be generated independently and in
+ * any order. Generation runs in parallel over blocks of nodes and the output is identical for a given seed whatever the
+ * number of threads. Nodes are named with zero-padded numbers (e.g. "007") so the natural order of names is the same as
+ * the order of node indices.
+ */
+public class LargeNetworkGen {
+    private static final int BLOCK = 1 << 12; //Nodes generated per parallel task, a multiple of 64 so state words are not shared
+    private static final int DEGREE = 0, NEIGHBOURS = 1, TRUTHS = 2, STATE = 3; //Random streams of each node
+
+    private final int size;
+    private final long seed;
+    private InDegree inDegree = InDegree.fixed(2);
+    private double bias = 0.5;
+
+    /**
+     * Distribution of the number of neighbour inputs per node, held as a cumulative distribution over degrees
+     */
+    public static class InDegree {
+        private final double[] cumulative; //Probability that the degree is at most the index
+
+        private InDegree(double[] weights) {
+            cumulative = new double[weights.length];
+            double total = 0;
+            for (int k = 0; k < weights.length; k++) cumulative[k] = total += weights[k];
+            for (int k = 0; k < weights.length; k++) cumulative[k] /= total;
+            cumulative[weights.length - 1] = 1;
+        }
+
+        /**
+         * @param k number of neighbours of every node
+         * @return distribution where every node has k neighbours
+         */
+        public static InDegree fixed(int k) {
+            double[] weights = new double[k + 1];
+            weights[k] = 1;
+            return new InDegree(weights);
+        }
+
+        /**
+         * @param mean mean number of neighbours
+         * @param max largest number of neighbours, the distribution is truncated above it
+         * @return Poisson distribution of in-degrees
+         */
+        public static InDegree poisson(double mean, int max) {
+            double[] weights = new double[max + 1];
+            double p = Math.exp(-mean);
+            for (int k = 0; k <= max; k++) {
+                weights[k] = p;
+                p *= mean / (k + 1);
+            }
+            return new InDegree(weights);
+        }
+
+        /**
+         * @param exponent power law exponent gamma, P(k) proportional to k^-gamma
+         * @param max largest number of neighbours
+         * @return scale-free distribution of in-degrees from 1 to max
+         */
+        public static InDegree scaleFree(double exponent, int max) {
+            double[] weights = new double[max + 1];
+            for (int k = 1; k <= max; k++) weights[k] = Math.pow(k, -exponent);
+            return new InDegree(weights);
+        }
+
+        /**
+         * @return largest degree the distribution can produce
+         */
+        public int max() {
+            return cumulative.length - 1;
+        }
+
+        int sample(double uniform) {
+            int k = Arrays.binarySearch(cumulative, uniform);
+            return k >= 0 ? k : -k - 1;
+        }
+    }
+
+    /**
+     * @param size number of nodes in the network
+     * @param seed seed the whole network is generated from
+     */
+    public LargeNetworkGen(int size, long seed) {
+        if (size < 2) throw new IllegalArgumentException("A network needs at least 2 nodes");
+        this.size = size;
+        this.seed = seed;
+    }
+
+    /**
+     * @param inDegree distribution of the number of neighbours per node, defaults to fixed(2). Degrees are capped at
+     *                 size - 1, as a node is never its own neighbour
+     * @return this generator
+     */
+    public LargeNetworkGen inDegree(InDegree inDegree) {
+        if (inDegree.max() > 30) throw new IllegalArgumentException("At most 30 neighbours per node are supported");
+        this.inDegree = inDegree;
+        return this;
+    }
+
+    /**
+     * @param bias probability that each truth table row is true, defaults to 0.5
+     * @return this generator
+     */
+    public LargeNetworkGen bias(double bias) {
+        if (bias < 0 || bias > 1) throw new IllegalArgumentException("Bias must be between 0 and 1");
+        this.bias = bias;
+        return this;
+    }
+
+    /**
+     * Generates the network in compiled form
+     * @return compiled network, with a random initial state
+     */
+    public CompiledNetwork generate() {
+        int[] inputStart = new int[size + 1];
+        int[] truthStart = new int[size + 1];
+        offsets(inputStart, truthStart);
+
+        int[] inputs = new int[inputStart[size]];
+        long[] truths = new long[truthStart[size]];
+        long[] state = new long[CompiledNetwork.stateWords(size)];
+        String[] names = new String[size];
+        int width = nameWidth();
+
+        blocks(size).forEach(block -> {
+            NodeRandom random = new NodeRandom();
+            int end = Math.min(size, (block + 1) * BLOCK);
+            for (int i = block * BLOCK; i < end; i++) {
+                names[i] = name(i, width);
+                neighbours(random, i, inputStart[i + 1] - inputStart[i], inputs, inputStart[i]);
+                truths(random, i, inputStart[i + 1] - inputStart[i], truths, truthStart[i]);
+                if (state(random, i)) state[i >>> 6] |= 1L << i;
+            }
+        });
+
+        return CompiledNetwork.of(names, inputStart, inputs, truthStart, truths, state);
+    }
+
+    /**
+     * Generates the network straight into a binary network file (see BinaryFormat), holding only the node offsets and
+     * one block of nodes at a time in memory
+     * @param path file to write, replaced if it exists
+     */
+    public void write(Path path) {
+        int[] inputStart = new int[size + 1];
+        int[] truthStart = new int[size + 1];
+        offsets(inputStart, truthStart);
+        int width = nameWidth();
+        int blocks = (size + BLOCK - 1) / BLOCK;
+
+        try (BinaryFormat.Writer writer = new BinaryFormat.Writer(path, size, inputStart[size], (long) size * width,
+                truthStart[size])) {
+            int[] nameStart = new int[BLOCK];
+            for (int block = 0; block < blocks; block++) {
+                int start = block * BLOCK;
+                int count = Math.min(BLOCK, size - start);
+                for (int i = 0; i < count; i++) nameStart[i] = (start + i) * width;
+                writer.putInts(nameStart, count);
+            }
+            writer.putInts(new int[] {size * width}, 1);
+            writer.endSection();
+
+            for (int i = 0; i < size; i++) writer.putBytes(name(i, width).getBytes(StandardCharsets.US_ASCII));
+            writer.endSection();
+
+            writer.putInts(inputStart, inputStart.length);
+            writer.endSection();
+
+            //Inputs and truth tables are generated a batch of blocks at a time, in parallel within the batch
+            int batch = Math.max(1, Runtime.getRuntime().availableProcessors()) * BLOCK;
+            for (int start = 0; start < size; start += batch) {
+                int end = Math.min(size, start + batch);
+                int offset = inputStart[start];
+                int[] inputs = new int[inputStart[end] - offset];
+                int first = start;
+                blocks(end - start).forEach(block -> {
+                    NodeRandom random = new NodeRandom();
+                    int last = Math.min(end, first + (block + 1) * BLOCK);
+                    for (int i = first + block * BLOCK; i < last; i++) {
+                        neighbours(random, i, inputStart[i + 1] - inputStart[i], inputs, inputStart[i] - offset);
+                    }
+                });
+                writer.putInts(inputs, inputs.length);
+            }
+            writer.endSection();
+
+            writer.putInts(truthStart, truthStart.length);
+            writer.endSection();
+
+            for (int start = 0; start < size; start += batch) {
+                int end = Math.min(size, start + batch);
+                int offset = truthStart[start];
+                long[] truths = new long[truthStart[end] - offset];
+                int first = start;
+                blocks(end - start).forEach(block -> {
+                    NodeRandom random = new NodeRandom();
+                    int last = Math.min(end, first + (block + 1) * BLOCK);
+                    for (int i = first + block * BLOCK; i < last; i++) {
+                        truths(random, i, inputStart[i + 1] - inputStart[i], truths, truthStart[i] - offset);
+                    }
+                });
+                writer.putLongs(truths, truths.length);
+            }
+
+            long[] state = new long[CompiledNetwork.stateWords(size)];
+            blocks(size).forEach(block -> {
+                NodeRandom random = new NodeRandom();
+                int end = Math.min(size, (block + 1) * BLOCK);
+                for (int i = block * BLOCK; i < end; i++) if (state(random, i)) state[i >>> 6] |= 1L << i;
+            });
+            writer.putLongs(state, state.length);
+        }
+    }
+
+    /**
+     * Draws every node's in-degree in parallel and fills in the input and truth table offsets
+     */
+    private void offsets(int[] inputStart, int[] truthStart) {
+        int[] degrees = new int[size];
+        blocks(size).forEach(block -> {
+            NodeRandom random = new NodeRandom();
+            int end = Math.min(size, (block + 1) * BLOCK);
+            for (int i = block * BLOCK; i < end; i++) {
+                random.reset(seed, i, DEGREE);
+                degrees[i] = Math.min(size - 1, inDegree.sample(random.nextDouble()));
+            }
+        });
+
+        long edges = 0;
+        long words = 0;
+        for (int i = 0; i < size; i++) {
+            edges += degrees[i];
+            words += CompiledNetwork.truthWords(degrees[i]);
+            if (edges > Integer.MAX_VALUE || words > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Network is too large, it has more than 2^31 inputs or truth words");
+            }
+            inputStart[i + 1] = (int) edges;
+            truthStart[i + 1] = (int) words;
+        }
+    }
+
+    /**
+     * Draws k distinct neighbours of a node, none of them the node itself
+     */
+    private void neighbours(NodeRandom random, int node, int k, int[] inputs, int offset) {
+        random.reset(seed, node, NEIGHBOURS);
+        for (int j = 0; j < k; j++) {
+            int neighbour;
+            boolean repeated;
+            do {
+                neighbour = random.nextInt(size - 1);
+                if (neighbour >= node) neighbour++;
+                repeated = false;
+                for (int previous = offset; previous < offset + j; previous++) {
+                    if (inputs[previous] == neighbour) {
+                        repeated = true;
+                        break;
+                    }
+                }
+            } while (repeated);
+            inputs[offset + j] = neighbour;
+        }
+    }
+
+    /**
+     * Draws the truth table of a node with k neighbours, each row true with probability bias
+     */
+    private void truths(NodeRandom random, int node, int k, long[] truths, int offset) {
+        random.reset(seed, node, TRUTHS);
+        int rows = 1 << k;
+        if (bias == 0.5) {
+            int words = CompiledNetwork.truthWords(k);
+            for (int w = 0; w < words; w++) truths[offset + w] = random.nextLong();
+            if (rows < 64) truths[offset] &= (1L << rows) - 1;
+        } else {
+            for (int row = 0; row < rows; row++) {
+                if (random.nextDouble() < bias) truths[offset + (row >>> 6)] |= 1L << row;
+            }
+        }
+    }
+
+    private boolean state(NodeRandom random, int node) {
+        random.reset(seed, node, STATE);
+        return random.nextLong() < 0;
+    }
+
+    private int nameWidth() {
+        return Integer.toString(size - 1).length();
+    }
+
+    private static String name(int node, int width) {
+        String digits = Integer.toString(node);
+        return "0".repeat(width - digits.length()) + digits;
+    }
+
+    private static IntStream blocks(int nodes) {
+        return IntStream.range(0, (nodes + BLOCK - 1) / BLOCK).parallel();
+    }
+
+    /**
+     * SplitMix64 generator that can be re-seeded in place for each node and stream, so generating a block of nodes
+     * does not allocate a generator per node
+     */
+    private static class NodeRandom {
+        private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+        private long state;
+
+        void reset(long seed, int node, int stream) {
+            state = NetworkGen.mix64(seed + NetworkGen.mix64(((long) node << 2 | stream) * GOLDEN));
+        }
+
+        long nextLong() {
+            return NetworkGen.mix64(state += GOLDEN);
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        int nextInt(int bound) {
+            return (int) (((nextLong() >>> 32) * bound) >>> 32);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package bnsim.generator;
 
 import bnsim.nodes.BNNode;
+import bnsim.process.BinaryFormat;
+import bnsim.process.CompiledNetwork;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Methods for generating a randomly configured Boolean network, and for importing previously saved networks
@@ -38,6 +42,25 @@ public class NetworkGen {
         return output;
     }
 
+    /**
+     * Import a network previously saved in the binary format (see FileOut.outputBinary)
+     * @param filepath filepath of saved network
+     * @return a TreeMap of String (node name) and BNNode pairs, representing the network
+     */
+    public static TreeMap<String, BNNode> binaryInput(String filepath){
+        return binaryInputCompiled(filepath).toNetwork();
+    }
+
+    /**
+     * Import a network previously saved in the binary format straight into its compiled form, without building any
+     * BNNodes
+     * @param filepath filepath of saved network
+     * @return compiled network, with the saved node states as its current state
+     */
+    public static CompiledNetwork binaryInputCompiled(String filepath){
+        return BinaryFormat.read(Paths.get(filepath));
+    }
+
     /**
      * Generate a random Boolean network of specified size and number of neighbours per node. Nodes are named
      * numerically (i.e. for a 3 node network nodes are named "0", "1", and "2").
@@ -46,9 +69,20 @@ public class NetworkGen {
      * @return a TreeMap of String (node name) and BNNode pairs, representing the network
      */
     public static TreeMap<String, BNNode> genRand(Integer size, Integer neighbours){
+        return genRand(size, neighbours, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Generate a random Boolean network of specified size and number of neighbours per node, drawing from the given
+     * random number generator so that a seeded generator gives a repeatable network. Nodes are named numerically.
+     * @param size number of nodes in network
+     * @param neighbours number of neighbour nodes per node
+     * @param random random number generator
+     * @return a TreeMap of String (node name) and BNNode pairs, representing the network
+     */
+    public static TreeMap<String, BNNode> genRand(Integer size, Integer neighbours, RandomGenerator random){
         TreeMap<String, BNNode> output = new TreeMap<>();
         Set<BNNode> outputSet = new TreeSet<>();
-        Random random = new Random();
 
         //Generate specified number of nodes
         for (int i = 0; i < size; i++) {
@@ -73,4 +107,16 @@ public class NetworkGen {
 
         return output;
     }
+
+    /**
+     * Stafford variant 13 of the MurmurHash3 finaliser, the output function of SplitMix64 and SplittableRandom. The
+     * one copy used by every generator and hash that derives well mixed values from a counter or key.
+     * @param z value to mix
+     * @return mixed value
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
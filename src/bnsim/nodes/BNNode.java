@@ -9,15 +9,19 @@ public class BNNode implements Comparable<BNNode> {
     public String name; //Node identifier
     public boolean state; //Represents current state of the node
     public LinkedHashSet<String> neighbours; //Set of neighbour nodes, identified by their String name
-    public BitSet truths; //Represents the output of the node's truth table. 0 entry represents the 0 row of table
+    public TruthTable truths; //Represents the output of the node's truth table. 0 entry represents the 0 row of table
 
-    public BNNode(String name, boolean state, LinkedHashSet<String> neighbours, BitSet truths){
+    public BNNode(String name, boolean state, LinkedHashSet<String> neighbours, TruthTable truths){
         this.name = Objects.requireNonNull(name, "Name cannot be null");
-        this.truths = (BitSet) Objects.requireNonNull(truths, "Truths BitSet cannot be null").clone();
+        this.truths = Objects.requireNonNull(truths, "Truths table cannot be null").copy();
         this.neighbours = new LinkedHashSet<>(Objects.requireNonNull(neighbours, "Neighbours set cannot be null"));
         this.state = state;
     }
 
+    public BNNode(String name, boolean state, LinkedHashSet<String> neighbours, BitSet truths){
+        this(name, state, neighbours, TruthTable.valueOf(Objects.requireNonNull(truths, "Truths BitSet cannot be null")));
+    }
+
     /**
      * Updates a node's state based on a mapping of Node names and states (representing the current state of a network).
      * @param currentState Map of Strings (node names) and Integers (node states).
@@ -60,7 +64,7 @@ public class BNNode implements Comparable<BNNode> {
 
         split[3] = split[3].replaceAll("[{}]", ""); //remove {}
         String[] bitsToSet = split[3].split(","); //splits into array of bits to set
-        BitSet truthsIn = new BitSet(1 << neighboursIn.size()); //generates bitset of correct size for # of neighbors
+        TruthTable truthsIn = new TruthTable(1 << neighboursIn.size()); //generates table of correct size for # of neighbors
         for (String bit : bitsToSet) { //iterates and sets appropriate bits as true
             if (bit.isEmpty()) break; //breaks if no bits to set
             truthsIn.set(Integer.parseInt(bit));
@@ -99,7 +103,7 @@ public class BNNode implements Comparable<BNNode> {
      * 'A' is the node name.
      * 'true' is the node starting state
      * '[B,C]' is a set of neighbour nodes
-     * '{2,3}' is a set of the BitSet entries set to true (ie rows of truth table that evaluate to true)
+     * '{2,3}' is a set of the truth table entries set to true (ie rows of truth table that evaluate to true)
      *
      * @return String representation of an AbsNode
      */
@@ -0,0 +1,370 @@
+package bnsim.nodes;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The output column of a node's truth table, with the BitSet methods BNNode code uses: bit r is the output of row r and
+ * rows beyond the end of the table are false.
+ * <p>
+ * A table is stored in one of two ways, chosen automatically. Small tables, and tables with no long runs of equal
+ * outputs, are packed 64 rows to a long. Large tables made up of long runs, as the functions of high in-degree hub
+ * nodes often are, are run-length encoded as the sorted rows at which the output changes, so a row lookup is a binary
+ * search. A run-length table that is flipped until it is no smaller than packed storage switches to packed storage.
+ * <p>
+ * Copies share storage until one of them is modified, so copying a network does not copy its truth tables. The choice
+ * of storage is revisited whenever shared storage is first modified. As with BitSet, a table must not be modified
+ * while it is read or copied from another thread.
+ */
+public final class TruthTable {
+    private static final int RUN_LENGTH_MIN_WORDS = 64; //Smallest packed size (4096 rows) worth run-length encoding
+
+    private long[] words; //Packed rows, or null when run-length encoded
+    private int[] changes; //Rows at which the output changes, in ascending order, when run-length encoded
+    private int changeCount; //Number of changes in use, always even
+    private boolean shared; //Whether the storage is shared with a copy and must be copied before it is modified
+
+    /**
+     * Creates an empty table (every row false)
+     * @param rows number of rows the table is expected to have
+     */
+    public TruthTable(int rows) {
+        if (wordsFor(rows) < RUN_LENGTH_MIN_WORDS) words = new long[wordsFor(rows)];
+        else changes = new int[4];
+    }
+
+    private TruthTable(long[] words, int[] changes, int changeCount) {
+        this.words = words;
+        this.changes = changes;
+        this.changeCount = changeCount;
+    }
+
+    /**
+     * @param bits rows that are true
+     * @return table with the same rows true as the BitSet, in whichever storage is smaller
+     */
+    public static TruthTable valueOf(BitSet bits) {
+        return valueOf(bits.toLongArray());
+    }
+
+    /**
+     * @param words rows packed 64 to a long, row r being bit r &amp; 63 of word r &gt;&gt;&gt; 6. Not modified
+     * @return table with the same rows true, in whichever storage is smaller
+     */
+    public static TruthTable valueOf(long[] words) {
+        TruthTable table = new TruthTable(words.clone(), null, 0);
+        table.choose();
+        return table;
+    }
+
+    /**
+     * @param changes rows at which the output changes, in ascending order, as returned by toChangeArray. Not modified
+     * @return table whose output is true from each even numbered change up to the next, in whichever storage is
+     *         smaller
+     */
+    public static TruthTable valueOfChanges(int[] changes) {
+        if ((changes.length & 1) != 0) throw new IllegalArgumentException("Changes must come in pairs");
+        for (int i = 0; i < changes.length; i++) {
+            if (changes[i] < 0 || (i > 0 && changes[i] <= changes[i - 1])) {
+                throw new IllegalArgumentException("Changes must be ascending rows");
+            }
+        }
+
+        TruthTable table = new TruthTable(null, changes.clone(), changes.length);
+        int words = wordsFor(table.length());
+        if (words < RUN_LENGTH_MIN_WORDS || changes.length > words) table.pack();
+        return table;
+    }
+
+    /**
+     * @param row truth table row
+     * @return output of the row
+     */
+    public boolean get(int row) {
+        if (row < 0) throw new IndexOutOfBoundsException("row < 0: " + row);
+        if (words != null) {
+            int word = row >>> 6;
+            return word < words.length && (words[word] & (1L << row)) != 0;
+        }
+        return (changesAtOrBelow(row) & 1) != 0;
+    }
+
+    /**
+     * Sets a row's output to true
+     * @param row truth table row
+     */
+    public void set(int row) {
+        set(row, true);
+    }
+
+    /**
+     * @param row truth table row
+     * @param value output of the row
+     */
+    public void set(int row, boolean value) {
+        if (get(row) != value) flip(row);
+    }
+
+    /**
+     * Sets a row's output to false
+     * @param row truth table row
+     */
+    public void clear(int row) {
+        set(row, false);
+    }
+
+    /**
+     * Inverts a row's output
+     * @param row truth table row
+     */
+    public void flip(int row) {
+        if (row < 0) throw new IndexOutOfBoundsException("row < 0: " + row);
+        if (shared) unshare();
+
+        if (words != null) {
+            int word = row >>> 6;
+            if (word >= words.length) words = Arrays.copyOf(words, Math.max(2 * words.length, word + 1));
+            words[word] ^= 1L << row;
+            return;
+        }
+
+        //Flipping a row changes whether the output changes at it and at the row after it
+        toggleChange(row);
+        toggleChange(row + 1);
+        if (4L * changeCount > 8L * wordsFor(length())) pack();
+    }
+
+    /**
+     * @param from row to start from
+     * @return first true row at or after from, or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) throw new IndexOutOfBoundsException("from < 0: " + from);
+        if (words != null) {
+            int word = from >>> 6;
+            if (word >= words.length) return -1;
+            long bits = words[word] & (-1L << from);
+            while (bits == 0) {
+                if (++word == words.length) return -1;
+                bits = words[word];
+            }
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        int index = changesAtOrBelow(from);
+        if ((index & 1) != 0) return from;
+        return index < changeCount ? changes[index] : -1;
+    }
+
+    /**
+     * @return number of true rows
+     */
+    public int cardinality() {
+        int count = 0;
+        if (words != null) {
+            for (long word : words) count += Long.bitCount(word);
+        } else {
+            for (int i = 0; i < changeCount; i += 2) count += changes[i + 1] - changes[i];
+        }
+        return count;
+    }
+
+    /**
+     * @return highest true row plus one, or 0 if no row is true
+     */
+    public int length() {
+        if (words == null) return changeCount == 0 ? 0 : changes[changeCount - 1];
+        for (int word = words.length - 1; word >= 0; word--) {
+            if (words[word] != 0) return (word << 6) + 64 - Long.numberOfLeadingZeros(words[word]);
+        }
+        return 0;
+    }
+
+    /**
+     * @return whether the table is run-length encoded rather than packed
+     */
+    public boolean isRunLength() {
+        return words == null;
+    }
+
+    /**
+     * @return copy of this table, sharing its storage until either is modified
+     */
+    public TruthTable copy() {
+        TruthTable copy = new TruthTable(words, changes, changeCount);
+        shared = true;
+        copy.shared = true;
+        return copy;
+    }
+
+    /**
+     * @return rows packed 64 to a long, as BitSet.toLongArray
+     */
+    public long[] toLongArray() {
+        long[] packed = new long[wordsFor(length())];
+        if (words != null) {
+            System.arraycopy(words, 0, packed, 0, packed.length);
+        } else {
+            for (int i = 0; i < changeCount; i += 2) setRange(packed, changes[i], changes[i + 1]);
+        }
+        return packed;
+    }
+
+    /**
+     * @return rows at which the output changes, in ascending order, as run-length storage holds them. The output is
+     *         true from each even numbered change up to the next
+     */
+    public int[] toChangeArray() {
+        if (words == null) return Arrays.copyOf(changes, changeCount);
+        int used = wordsFor(length());
+        return changesOf(words, used, (int) countChanges(words, used));
+    }
+
+    /**
+     * @return BitSet with the same rows true
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(toLongArray());
+    }
+
+    /**
+     * Copies shared storage before it is modified, choosing again between packed and run-length storage
+     */
+    private void unshare() {
+        shared = false;
+        if (words != null) {
+            words = words.clone();
+            choose();
+        } else {
+            changes = Arrays.copyOf(changes, Math.max(changeCount + 2, changes.length));
+        }
+    }
+
+    /**
+     * Run-length encodes packed storage if that at least halves its size
+     */
+    private void choose() {
+        if (words.length < RUN_LENGTH_MIN_WORDS) return;
+        int used = wordsFor(length());
+        long count = countChanges(words, used);
+        if (4 * count * 2 > 8L * words.length) return;
+
+        changes = changesOf(words, used, (int) count);
+        changeCount = changes.length;
+        words = null;
+    }
+
+    /**
+     * Counts the changes in packed rows, each change being a row whose output differs from the row before it
+     */
+    private static long countChanges(long[] words, int used) {
+        long count = 0;
+        long previous = 0;
+        for (int word = 0; word < used; word++) {
+            count += Long.bitCount(words[word] ^ ((words[word] << 1) | (previous >>> 63)));
+            previous = words[word];
+        }
+        return count + (previous >>> 63);
+    }
+
+    /**
+     * Lists the changes in packed rows, given their number from countChanges
+     */
+    private static int[] changesOf(long[] words, int used, int count) {
+        int[] runChanges = new int[count];
+        int index = 0;
+        long previous = 0;
+        for (int word = 0; word < used; word++) {
+            long bits = words[word] ^ ((words[word] << 1) | (previous >>> 63));
+            while (bits != 0) {
+                runChanges[index++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+            previous = words[word];
+        }
+        if (index < runChanges.length) runChanges[index] = used << 6;
+        return runChanges;
+    }
+
+    private void pack() {
+        words = toLongArray();
+        changes = null;
+        changeCount = 0;
+    }
+
+    /**
+     * @return number of changes at or below a row, whose parity is the row's output
+     */
+    private int changesAtOrBelow(int row) {
+        int low = 0;
+        int high = changeCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (changes[middle] <= row) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private void toggleChange(int row) {
+        int index = Arrays.binarySearch(changes, 0, changeCount, row);
+        if (index >= 0) {
+            System.arraycopy(changes, index + 1, changes, index, changeCount - index - 1);
+            changeCount--;
+        } else {
+            index = -index - 1;
+            if (changeCount == changes.length) changes = Arrays.copyOf(changes, Math.max(4, 2 * changes.length));
+            System.arraycopy(changes, index, changes, index + 1, changeCount - index);
+            changes[index] = row;
+            changeCount++;
+        }
+    }
+
+    private static void setRange(long[] packed, int from, int to) {
+        for (int row = from; row < to; ) {
+            int word = row >>> 6;
+            int end = Math.min(to, (word + 1) << 6);
+            long mask = end - row == 64 ? -1L : ((1L << (end - row)) - 1) << row;
+            packed[word] |= mask;
+            row = end;
+        }
+    }
+
+    private static int wordsFor(int rows) {
+        return (int) ((rows + 63L) >>> 6);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TruthTable)) return false;
+
+        TruthTable that = (TruthTable) o;
+        int row = nextSetBit(0);
+        int other = that.nextSetBit(0);
+        while (row == other && row >= 0) {
+            row = nextSetBit(row + 1);
+            other = that.nextSetBit(other + 1);
+        }
+        return row == other;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toLongArray());
+    }
+
+    /**
+     * Generates a String representation of the true rows in the same format as BitSet, e.g. {2, 3}
+     * @return String representation of the table
+     */
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder("{");
+        for (int row = nextSetBit(0); row >= 0; row = nextSetBit(row + 1)) {
+            if (output.length() > 1) output.append(", ");
+            output.append(row);
+        }
+        return output.append('}').toString();
+    }
+}
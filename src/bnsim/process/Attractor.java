@@ -0,0 +1,153 @@
+package bnsim.process;
+
+import bnsim.nodes.BNNode;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * An attractor reached by iterating a Boolean network from an initial state. Holds the length of the transient
+ * leading into the attractor and the attractor's cycle of states, in the temporal order they are visited starting
+ * from the first state of the cycle the network reaches.
+ * <p>
+ * Attractors are found with Brent's cycle-finding algorithm over packed network states, which needs only a constant
+ * number of state buffers no matter how long the transient or cycle is.
+ */
+public class Attractor {
+    public final int transientLength; //Number of iterations before the network first enters the cycle
+    public final int cycleLength; //Number of states in the cycle (1 for a fixed point)
+    private final long[][] cycle; //Packed cycle states, in temporal order
+    private final int size; //Number of nodes in the network
+
+    Attractor(int transientLength, long[][] cycle, int size) {
+        this.transientLength = transientLength;
+        this.cycleLength = cycle.length;
+        this.cycle = cycle;
+        this.size = size;
+    }
+
+    /**
+     * Iterates a network from its current node states until it falls into an attractor. The network's node states
+     * are not modified.
+     * @param network network to iterate
+     * @param maxSteps maximum number of network iterations to spend searching
+     * @return the attractor reached, or null if none was found within maxSteps iterations
+     */
+    public static Attractor find(TreeMap<String, BNNode> network, int maxSteps) {
+        return find(CompiledNetwork.compile(network), maxSteps);
+    }
+
+    /**
+     * Iterates a compiled network from its current state until it falls into an attractor. The network's state is not
+     * modified.
+     * @param network compiled network to iterate
+     * @param maxSteps maximum number of network iterations to spend searching
+     * @return the attractor reached, or null if none was found within maxSteps iterations
+     */
+    public static Attractor find(CompiledNetwork network, int maxSteps) {
+        return find(network, network.state(), maxSteps);
+    }
+
+    /**
+     * Iterates a compiled network from a given packed state until it falls into an attractor
+     * @param network compiled network to iterate
+     * @param initial packed initial state, not modified
+     * @param maxSteps maximum number of network iterations to spend searching
+     * @return the attractor reached, or null if none was found within maxSteps iterations
+     */
+    public static Attractor find(CompiledNetwork network, long[] initial, int maxSteps) {
+        int words = network.words;
+        long[] tortoise = Arrays.copyOf(initial, words);
+        long[] hare = new long[words];
+        long[] scratch = new long[words];
+        network.step(tortoise, hare);
+        int steps = 1;
+
+        //Find the cycle length: the tortoise waits at powers of two while the hare runs ahead
+        int power = 1;
+        int cycleLength = 1;
+        while (!Arrays.equals(tortoise, hare)) {
+            if (steps++ >= maxSteps) return null;
+            if (power == cycleLength) {
+                System.arraycopy(hare, 0, tortoise, 0, words);
+                power <<= 1;
+                cycleLength = 0;
+            }
+            network.step(hare, scratch);
+            long[] swap = hare;
+            hare = scratch;
+            scratch = swap;
+            cycleLength++;
+        }
+
+        //Find the transient length: start the hare one cycle ahead and advance both until they meet
+        System.arraycopy(initial, 0, tortoise, 0, words);
+        System.arraycopy(initial, 0, hare, 0, words);
+        for (int i = 0; i < cycleLength; i++) {
+            network.step(hare, scratch);
+            long[] swap = hare;
+            hare = scratch;
+            scratch = swap;
+        }
+
+        int transientLength = 0;
+        while (!Arrays.equals(tortoise, hare)) {
+            network.step(tortoise, scratch);
+            long[] swap = tortoise;
+            tortoise = scratch;
+            scratch = swap;
+
+            network.step(hare, scratch);
+            swap = hare;
+            hare = scratch;
+            scratch = swap;
+            transientLength++;
+        }
+
+        //Record the cycle in temporal order from the first state reached
+        long[][] cycle = new long[cycleLength][];
+        cycle[0] = tortoise.clone();
+        for (int i = 1; i < cycleLength; i++) {
+            cycle[i] = new long[words];
+            network.step(cycle[i - 1], cycle[i]);
+        }
+
+        return new Attractor(transientLength, cycle, network.size());
+    }
+
+    /**
+     * @param index position in the cycle, 0 being the first state of the cycle the network reaches
+     * @return packed state at that position (node i is bit (i &amp; 63) of word (i &gt;&gt;&gt; 6)), not a copy
+     */
+    public long[] state(int index) {
+        return cycle[index];
+    }
+
+    /**
+     * @param index position in the cycle, 0 being the first state of the cycle the network reaches
+     * @param node node index
+     * @return state of the node at that position
+     */
+    public boolean get(int index, int node) {
+        return (cycle[index][node >>> 6] & (1L << node)) != 0;
+    }
+
+    /**
+     * Gives a String representation of the cycle as comma separated node states (e.g.: 000,001,000), in the same
+     * format as the desired traces used by Objective.
+     * @return String representation of the cycle
+     */
+    public String trace() {
+        StringBuilder trace = new StringBuilder(cycleLength * (size + 1));
+        for (int i = 0; i < cycleLength; i++) {
+            if (i > 0) trace.append(',');
+            for (int node = 0; node < size; node++) trace.append(get(i, node) ? 1 : 0);
+        }
+        return trace.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "transient " + transientLength + " ; cycle " + cycleLength + " ; [" + trace() + "]";
+    }
+}
@@ -0,0 +1,404 @@
+package bnsim.process;
+
+import bnsim.nodes.TruthTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact, versioned binary format for Boolean networks. The file holds the same arrays as a CompiledNetwork, so it can
+ * be loaded by memory-mapping each section and copying it straight into the compiled form, with no parsing. The arrays
+ * are checked with CompiledNetwork.of as they are loaded, so a truncated or corrupt file fails to load.
+ * <p>
+ * All values are little-endian. The file starts with a fixed size header:
+ * <pre>
+ * int  magic       'B' 'N' 'S' 'B'
+ * int  version     VERSION
+ * int  size        number of nodes
+ * int  edges       number of neighbour inputs across all nodes
+ * long nameBytes   length of the UTF-8 name table
+ * int  truthWords  number of longs in the packed truth tables
+ * int  stateWords  number of longs in the packed initial state
+ * int  runNodes    number of nodes with run-length encoded truth tables
+ * int  runChanges  number of changes across all run-length encoded truth tables
+ * </pre>
+ * followed by these sections, each padded to a multiple of 8 bytes:
+ * <pre>
+ * int[size + 1]  nameStart   offset of each node name in the name table
+ * byte[]         names       UTF-8 node names, in natural order (a node's index is its position)
+ * int[size + 1]  inputStart  offset of each node's inputs in inputs
+ * int[edges]     inputs      neighbour node indices (CSR form), first neighbour is the most significant row bit
+ * int[size + 1]  truthStart  offset of each node's truth table in truths, a run-length encoded table having no words
+ * long[]         truths      packed truth tables
+ * long[]         state       packed initial node states
+ * int[runNodes]  runNodes    nodes with run-length encoded truth tables, in ascending order
+ * int[runNodes]  runLength   number of changes in each of their truth tables
+ * int[]          runs        rows at which each table's output changes, as TruthTable.toChangeArray
+ * </pre>
+ * so the large, structured truth tables of hub nodes, which a node and CompiledNetwork keep run-length encoded, are
+ * stored that way rather than as packed rows. Version 1 files, written before run-length encoded tables, end the
+ * header at stateWords and the file at state, and are still read.
+ */
+public class BinaryFormat {
+    public static final int MAGIC = 0x42534E42; //"BNSB" when read as little-endian bytes
+    public static final int VERSION = 2;
+    static final int HEADER_BYTES = 40;
+    static final int V1_HEADER_BYTES = 32;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long MAP_WINDOW = 1L << 30; //Largest region mapped at once, keeps each mapping under 2GB
+
+    /**
+     * Writes a compiled network to a file, including its current state as the initial state
+     * @param network compiled network to write
+     * @param path file to write, replaced if it exists
+     */
+    public static void write(CompiledNetwork network, Path path) {
+        int[][] runs = runs(network);
+        try (Writer writer = new Writer(Writer.open(path), true, network.size(), network.inputs.length,
+                nameBytes(network), network.truths.length, runs.length, runChanges(runs))) {
+            writeSections(network, runs, writer);
+        }
+    }
+
+    /**
+     * Writes a compiled network at the current position of an open file, so it can be embedded in a larger file. The
+     * channel is left open, positioned after the network.
+     * @param network compiled network to write
+     * @param channel file to write to
+     */
+    public static void write(CompiledNetwork network, FileChannel channel) {
+        int[][] runs = runs(network);
+        try (Writer writer = new Writer(channel, false, network.size(), network.inputs.length, nameBytes(network),
+                network.truths.length, runs.length, runChanges(runs))) {
+            writeSections(network, runs, writer);
+        }
+    }
+
+    private static long nameBytes(CompiledNetwork network) {
+        long bytes = 0;
+        for (String name : network.names) bytes += name.getBytes(StandardCharsets.UTF_8).length;
+        return bytes;
+    }
+
+    /**
+     * @return changes of each run-length encoded truth table, in the order of network.runNodes
+     */
+    private static int[][] runs(CompiledNetwork network) {
+        int[][] runs = new int[network.runNodes.length][];
+        for (int i = 0; i < runs.length; i++) runs[i] = network.runTables[i].toChangeArray();
+        return runs;
+    }
+
+    private static int runChanges(int[][] runs) {
+        long changes = 0;
+        for (int[] run : runs) changes += run.length;
+        if (changes > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many run-length changes to write");
+        return (int) changes;
+    }
+
+    private static void writeSections(CompiledNetwork network, int[][] runs, Writer writer) {
+        byte[][] names = new byte[network.size()][];
+        int[] nameStart = new int[network.size() + 1];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = network.names[i].getBytes(StandardCharsets.UTF_8);
+            nameStart[i + 1] = nameStart[i] + names[i].length;
+        }
+
+        writer.putInts(nameStart, nameStart.length);
+        writer.endSection();
+        for (byte[] name : names) writer.putBytes(name);
+        writer.endSection();
+        writer.putInts(network.inputStart, network.inputStart.length);
+        writer.endSection();
+        writer.putInts(network.inputs, network.inputs.length);
+        writer.endSection();
+        writer.putInts(network.truthStart, network.truthStart.length);
+        writer.endSection();
+        writer.putLongs(network.truths, network.truths.length);
+        writer.putLongs(network.state(), network.words);
+
+        int[] runLength = new int[runs.length];
+        for (int i = 0; i < runs.length; i++) runLength[i] = runs[i].length;
+        writer.putInts(network.runNodes, runs.length);
+        writer.endSection();
+        writer.putInts(runLength, runs.length);
+        writer.endSection();
+        for (int[] run : runs) writer.putInts(run, run.length);
+        writer.endSection();
+    }
+
+    /**
+     * Streams a network file section by section, for networks that are generated piece by piece and never held in
+     * memory in full. The caller writes the sections in file order, ending each int or byte section with endSection so
+     * the next starts on an 8 byte boundary; the section sizes must match those given to the constructor. Every truth
+     * table is written packed, so the run-length sections are empty and the file ends with the state.
+     */
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final boolean ownsChannel; //Whether close also closes the channel
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * Opens the file and writes the header
+         * @param path file to write, replaced if it exists
+         * @param size number of nodes
+         * @param edges number of neighbour inputs across all nodes
+         * @param nameBytes length of the UTF-8 name table
+         * @param truthWords number of longs in the packed truth tables
+         */
+        public Writer(Path path, int size, int edges, long nameBytes, int truthWords) {
+            this(open(path), true, size, edges, nameBytes, truthWords, 0, 0);
+        }
+
+        /**
+         * Writes the header at the current position of an open file, which close leaves open
+         * @param channel file to write to
+         * @param size number of nodes
+         * @param edges number of neighbour inputs across all nodes
+         * @param nameBytes length of the UTF-8 name table
+         * @param truthWords number of longs in the packed truth tables
+         */
+        public Writer(FileChannel channel, int size, int edges, long nameBytes, int truthWords) {
+            this(channel, false, size, edges, nameBytes, truthWords, 0, 0);
+        }
+
+        private Writer(FileChannel channel, boolean ownsChannel, int size, int edges, long nameBytes, int truthWords,
+                       int runNodes, int runChanges) {
+            this.channel = channel;
+            this.ownsChannel = ownsChannel;
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(edges).putLong(nameBytes).putInt(truthWords)
+                    .putInt(CompiledNetwork.stateWords(size)).putInt(runNodes).putInt(runChanges);
+        }
+
+        private static FileChannel open(Path path) {
+            try {
+                if (path.getParent() != null) Files.createDirectories(path.getParent());
+                return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void putBytes(byte[] values) {
+            try {
+                for (byte b : values) {
+                    if (!buffer.hasRemaining()) drain(channel, buffer);
+                    buffer.put(b);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void putInts(int[] values, int count) {
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (buffer.remaining() < Integer.BYTES) drain(channel, buffer);
+                    buffer.putInt(values[i]);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void putLongs(long[] values, int count) {
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (buffer.remaining() < Long.BYTES) drain(channel, buffer);
+                    buffer.putLong(values[i]);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Pads the current section to a multiple of 8 bytes
+         */
+        public void endSection() {
+            try {
+                pad(channel, buffer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                drain(channel, buffer);
+                if (ownsChannel) channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads a network file into its compiled form. Each section is memory-mapped and copied directly into the
+     * compiled network's arrays.
+     * @param path file to read
+     * @return compiled network, with the saved initial state as its current state
+     */
+    public static CompiledNetwork read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a network embedded in a larger file, as written by write(CompiledNetwork, FileChannel)
+     * @param channel file to read
+     * @param start offset of the network in the file
+     * @return compiled network, with the saved initial state as its current state
+     */
+    public static CompiledNetwork read(FileChannel channel, long start) {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int read;
+            do read = channel.read(header, start + header.position()); while (read > 0 && header.hasRemaining());
+            header.flip();
+            if (header.remaining() < V1_HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new RuntimeException("Not a binary network at offset " + start);
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new RuntimeException("Unsupported binary network version " + version);
+            }
+            int headerBytes = version == 1 ? V1_HEADER_BYTES : HEADER_BYTES;
+
+            int size = header.getInt();
+            int edges = header.getInt();
+            long nameBytes = header.getLong();
+            int truthWords = header.getInt();
+            int stateWords = header.getInt();
+            int runCount = version == 1 ? 0 : header.getInt();
+            int runChanges = version == 1 ? 0 : header.getInt();
+            if (size < 0 || edges < 0 || nameBytes < 0 || nameBytes > Integer.MAX_VALUE - 8 || truthWords < 0
+                    || stateWords != CompiledNetwork.stateWords(size) || runCount < 0 || runCount > size
+                    || runChanges < 0) {
+                throw new RuntimeException("Corrupt binary network header at offset " + start);
+            }
+            long length = headerBytes + 3 * padded((size + 1L) * Integer.BYTES) + padded(nameBytes)
+                    + padded((long) edges * Integer.BYTES) + ((long) truthWords + stateWords) * Long.BYTES
+                    + 2 * padded((long) runCount * Integer.BYTES) + padded((long) runChanges * Integer.BYTES);
+            if (start + length > channel.size()) {
+                throw new RuntimeException("Binary network at offset " + start + " is truncated");
+            }
+
+            long offset = start + headerBytes;
+            int[] nameStart = new int[size + 1];
+            offset = getInts(channel, offset, nameStart);
+
+            String[] names = new String[size];
+            byte[] nameTable = new byte[(int) nameBytes];
+            offset = getBytes(channel, offset, nameTable);
+            for (int i = 0; i < size; i++) {
+                if (nameStart[i] < 0 || nameStart[i] > nameStart[i + 1] || nameStart[i + 1] > nameBytes) {
+                    throw new RuntimeException("Corrupt binary network name table at offset " + start);
+                }
+                names[i] = new String(nameTable, nameStart[i], nameStart[i + 1] - nameStart[i], StandardCharsets.UTF_8);
+            }
+
+            int[] inputStart = new int[size + 1];
+            offset = getInts(channel, offset, inputStart);
+            int[] inputs = new int[edges];
+            offset = getInts(channel, offset, inputs);
+            int[] truthStart = new int[size + 1];
+            offset = getInts(channel, offset, truthStart);
+            long[] truths = new long[truthWords];
+            offset = getLongs(channel, offset, truths);
+            long[] state = new long[stateWords];
+            offset = getLongs(channel, offset, state);
+
+            int[] runNodes = new int[runCount];
+            offset = getInts(channel, offset, runNodes);
+            int[] runLength = new int[runCount];
+            offset = getInts(channel, offset, runLength);
+            TruthTable[] runTables = new TruthTable[runCount];
+            for (int i = 0; i < runCount; i++) {
+                if (runLength[i] < 0 || runLength[i] > runChanges) {
+                    throw new RuntimeException("Corrupt binary network run lengths at offset " + start);
+                }
+                int[] run = new int[runLength[i]];
+                getInts(channel, offset, run);
+                offset += (long) run.length * Integer.BYTES;
+                runChanges -= run.length;
+                runTables[i] = TruthTable.valueOfChanges(run);
+            }
+
+            return CompiledNetwork.of(names, inputStart, inputs, truthStart, truths, runNodes, runTables, state);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Corrupt binary network at offset " + start + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Pads the output to a multiple of 8 bytes. The buffer holds a multiple of 8 bytes so its position can be used
+     */
+    static void pad(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while ((buffer.position() & 7) != 0) {
+            if (!buffer.hasRemaining()) drain(channel, buffer);
+            buffer.put((byte) 0);
+        }
+    }
+
+    static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static long padded(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long bytes) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        return mapped;
+    }
+
+    private static long getBytes(FileChannel channel, long offset, byte[] values) throws IOException {
+        for (int done = 0; done < values.length; ) {
+            int count = (int) Math.min(values.length - done, MAP_WINDOW);
+            map(channel, offset + done, count).get(values, done, count);
+            done += count;
+        }
+        return offset + padded(values.length);
+    }
+
+    private static long getInts(FileChannel channel, long offset, int[] values) throws IOException {
+        long window = MAP_WINDOW / Integer.BYTES;
+        for (int done = 0; done < values.length; ) {
+            int count = (int) Math.min(values.length - done, window);
+            map(channel, offset + (long) done * Integer.BYTES, (long) count * Integer.BYTES).asIntBuffer()
+                    .get(values, done, count);
+            done += count;
+        }
+        return offset + padded((long) values.length * Integer.BYTES);
+    }
+
+    private static long getLongs(FileChannel channel, long offset, long[] values) throws IOException {
+        long window = MAP_WINDOW / Long.BYTES;
+        for (int done = 0; done < values.length; ) {
+            int count = (int) Math.min(values.length - done, window);
+            map(channel, offset + (long) done * Long.BYTES, (long) count * Long.BYTES).asLongBuffer()
+                    .get(values, done, count);
+            done += count;
+        }
+        return offset + padded((long) values.length * Long.BYTES);
+    }
+}
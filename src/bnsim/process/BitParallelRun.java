@@ -0,0 +1,186 @@
+package bnsim.process;
+
+import bnsim.nodes.BNNode;
+
+import java.util.*;
+
+/**
+ * Bit-sliced simulator that iterates up to 64 initial states of the same network in a single pass. Each node's state
+ * is a long whose 64 bits ("lanes") are 64 independent trajectories, and truth tables are evaluated by bitwise
+ * multiplexing over the neighbour words rather than by row lookup.
+ */
+public class BitParallelRun {
+    public static final int LANES = 64;
+
+    private final CompiledNetwork network;
+    private long[] lanes; //State of each node, bit l is the node state in lane l
+    private long[] next; //Buffer the next lane states are written to during a step
+    private final long[] scratch; //Working space for the multiplexer tree of the widest truth table
+    private long active; //Mask of lanes holding a loaded initial state
+
+    /**
+     * @param network compiled network to simulate, truth tables are read from it on every step
+     */
+    public BitParallelRun(CompiledNetwork network) {
+        this.network = network;
+        this.lanes = new long[network.size()];
+        this.next = new long[network.size()];
+
+        int maxInputs = 0;
+        for (int node = 0; node < network.size(); node++) maxInputs = Math.max(maxInputs, network.inputCount(node));
+        this.scratch = new long[maxInputs > 0 ? 1 << (maxInputs - 1) : 1];
+    }
+
+    /**
+     * Loads up to 64 initial states into the lanes. Nodes missing from an initial state take the compiled network's
+     * current state, as with Utility.setState.
+     * @param initialStates list of Maps of Strings (node names) and Boolean values
+     * @param from index of the first initial state to load
+     * @return number of lanes loaded
+     */
+    public int load(List<Map<String, Boolean>> initialStates, int from) {
+        int count = Math.min(LANES, initialStates.size() - from);
+
+        for (int node = 0; node < lanes.length; node++) lanes[node] = network.get(node) ? -1L : 0L;
+
+        for (int lane = 0; lane < count; lane++) {
+            long bit = 1L << lane;
+            initialStates.get(from + lane).forEach((K,V) -> {
+                int node = network.indexOf(K);
+                if (node < 0) return;
+                if (V) lanes[node] |= bit;
+                else lanes[node] &= ~bit;
+            });
+        }
+
+        active = count == LANES ? -1L : (1L << count) - 1;
+        return count;
+    }
+
+    /**
+     * Loads lane states that have already been laid out one word per node
+     * @param laneStates state of each node in every lane, bit l is lane l
+     * @param activeLanes mask of the lanes holding a loaded initial state
+     */
+    public void load(long[] laneStates, long activeLanes) {
+        System.arraycopy(laneStates, 0, lanes, 0, lanes.length);
+        active = activeLanes;
+    }
+
+    /**
+     * @return mask of the lanes holding a loaded initial state
+     */
+    public long active() {
+        return active;
+    }
+
+    /**
+     * @param node node index
+     * @return state of the node in every lane, bit l is lane l
+     */
+    public long lane(int node) {
+        return lanes[node];
+    }
+
+    /**
+     * Flips the state of a node in the selected lanes
+     * @param node node index
+     * @param laneMask lanes to flip the node in
+     */
+    public void flip(int node, long laneMask) {
+        lanes[node] ^= laneMask;
+    }
+
+    /**
+     * Advances every lane by one synchronous update
+     */
+    public void step() {
+        for (int node = 0; node < lanes.length; node++) next[node] = evaluate(node);
+
+        long[] swap = lanes;
+        lanes = next;
+        next = swap;
+    }
+
+    /**
+     * Evaluates a node's truth table for all lanes at once. The table is reduced one input at a time, starting from
+     * the last neighbour (least significant row bit), with out = low ^ (x &amp; (high ^ low)) selecting between the
+     * two halves of each pair of rows.
+     */
+    private long evaluate(int node) {
+        int inputs = network.inputCount(node);
+        if (inputs == 0) return network.truth(node, 0) ? -1L : 0L;
+
+        int base = network.inputStart[node];
+
+        //First level reads pairs of rows straight from the truth table
+        long x = lanes[network.inputs[base + inputs - 1]];
+        int pairs = 1 << (inputs - 1);
+        for (int pair = 0; pair < pairs; pair++) {
+            boolean low = network.truth(node, pair << 1);
+            boolean high = network.truth(node, (pair << 1) | 1);
+            scratch[pair] = low ? (high ? -1L : ~x) : (high ? x : 0L);
+        }
+
+        //Remaining levels fold the scratch words in place
+        for (int position = inputs - 2; position >= 0; position--) {
+            x = lanes[network.inputs[base + position]];
+            pairs >>>= 1;
+            for (int pair = 0; pair < pairs; pair++) {
+                long low = scratch[pair << 1];
+                long high = scratch[(pair << 1) | 1];
+                scratch[pair] = low ^ (x & (high ^ low));
+            }
+        }
+
+        return scratch[0];
+    }
+
+    /**
+     * Iterates a network from each of a batch of initial states, 64 at a time. Traces are comma separated node states
+     * for each iteration (e.g.: 000,001,000), starting with the state after the first iteration, in the same format
+     * Objective compares against.
+     * @param network network to iterate, node states are not modified
+     * @param initialStates list of Maps of Strings (node names) and Boolean values
+     * @param iterations number of iterations
+     * @return one trace per initial state, in the order given
+     */
+    public static List<String> iterateStrTraces(TreeMap<String, BNNode> network,
+                                                List<Map<String, Boolean>> initialStates, int iterations) {
+        return iterateStrTraces(CompiledNetwork.compile(network), initialStates, iterations);
+    }
+
+    /**
+     * Iterates a compiled network from each of a batch of initial states, 64 at a time. See
+     * iterateStrTraces(TreeMap, List, int).
+     * @param network compiled network to iterate, node states are not modified
+     * @param initialStates list of Maps of Strings (node names) and Boolean values
+     * @param iterations number of iterations
+     * @return one trace per initial state, in the order given
+     */
+    public static List<String> iterateStrTraces(CompiledNetwork network, List<Map<String, Boolean>> initialStates,
+                                                int iterations) {
+        ArrayList<String> output = new ArrayList<>(initialStates.size());
+        BitParallelRun run = new BitParallelRun(network);
+        int size = network.size();
+
+        for (int from = 0; from < initialStates.size(); from += LANES) {
+            int count = run.load(initialStates, from);
+
+            StringBuilder[] traces = new StringBuilder[count];
+            for (int lane = 0; lane < count; lane++) traces[lane] = new StringBuilder(iterations * (size + 1));
+
+            for (int i = 0; i < iterations; i++) {
+                run.step();
+                for (int lane = 0; lane < count; lane++) {
+                    if (i > 0) traces[lane].append(',');
+                    for (int node = 0; node < size; node++) traces[lane].append((run.lanes[node] >>> lane) & 1L);
+                }
+            }
+
+            for (StringBuilder trace : traces) output.add(trace.toString());
+        }
+
+        return output;
+    }
+}
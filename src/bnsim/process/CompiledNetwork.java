@@ -0,0 +1,531 @@
+package bnsim.process;
+
+import bnsim.nodes.BNNode;
+import bnsim.nodes.TruthTable;
+
+import java.util.*;
+
+/**
+ * A "compiled", index-based form of a Boolean network. Nodes are identified by an int index (their position in the
+ * natural ordering of node names), neighbour inputs are held in flat int arrays, truth tables are packed into a single
+ * long array and node states are double-buffered as packed bits. Iterating a compiled network does not allocate.
+ * <p>
+ * Truth tables that a node holds run-length encoded (see TruthTable), as the large tables of hub nodes often are, stay
+ * run-length encoded: they take no words in the packed array and a row is looked up by binary search over the rows at
+ * which the output changes, so a hub with 20 or more inputs does not cost megabytes of packed rows.
+ * <p>
+ * A compiled network is a snapshot: changes made to the source BNNodes after compiling are not reflected (and vice
+ * versa) unless states are explicitly loaded or stored. A node's inputs and truth table can be replaced in place with
+ * setNode, which rewrites only that node's slices of the flat arrays.
+ */
+public class CompiledNetwork {
+    static final int MAX_INPUTS = 30; //Most inputs a node can have, so that its rows fit in an int
+    final String[] names; //Node names, in natural order. Index in this array is the node index
+    final int[] inputStart; //Offset of each node's inputs in inputs, length size() + 1
+    int[] inputs; //Flat array of neighbour (input) node indices, first neighbour is the most significant row bit
+    final int[] truthStart; //Offset (in words) of each node's truth table in truths, length size() + 1
+    long[] truths; //Packed truth tables, row r of node i is bit r of the table starting at truthStart[i]
+    int[] runNodes; //Nodes whose truth tables are run-length encoded, with no words in truths, ascending
+    TruthTable[] runTables; //Run-length encoded truth table of each node in runNodes
+    final int words; //Number of long words needed to hold one network state
+
+    private long[] state; //Current network state, node i is bit (i & 63) of word (i >>> 6)
+    private long[] next; //Buffer the next state is written to during an iteration
+
+    CompiledNetwork(String[] names, int[] inputStart, int[] inputs, int[] truthStart, long[] truths, int[] runNodes,
+                    TruthTable[] runTables, long[] state) {
+        this.names = names;
+        this.inputStart = inputStart;
+        this.inputs = inputs;
+        this.truthStart = truthStart;
+        this.truths = truths;
+        this.runNodes = runNodes;
+        this.runTables = runTables;
+        this.words = stateWords(names.length);
+        this.state = Arrays.copyOf(state, words);
+        this.next = new long[words];
+    }
+
+    /**
+     * Compiles a network into its index-based form. Node states are copied from the network's current states.
+     * @param network network to compile
+     * @return compiled copy of the network
+     */
+    public static CompiledNetwork compile(TreeMap<String, BNNode> network) {
+        int size = network.size();
+        String[] names = network.keySet().toArray(new String[0]);
+
+        HashMap<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < size; i++) index.put(names[i], i);
+
+        //Count inputs, truth table words and run-length tables so the flat arrays can be sized up front
+        int[] inputStart = new int[size + 1];
+        int[] truthStart = new int[size + 1];
+        int runCount = 0;
+        int counter = 0;
+        for (BNNode node : network.values()) {
+            inputStart[counter + 1] = inputStart[counter] + node.neighbours.size();
+            boolean runLength = runLength(node.truths, node.neighbours.size());
+            if (runLength) runCount++;
+            truthStart[counter + 1] = truthStart[counter] + (runLength ? 0 : truthWords(node.neighbours.size()));
+            counter++;
+        }
+
+        int[] inputs = new int[inputStart[size]];
+        long[] truths = new long[truthStart[size]];
+        int[] runNodes = new int[runCount];
+        TruthTable[] runTables = new TruthTable[runCount];
+        long[] state = new long[stateWords(size)];
+        runCount = 0;
+
+        counter = 0;
+        for (BNNode node : network.values()) {
+            int position = inputStart[counter];
+            for (String neighbour : node.neighbours) {
+                Integer neighbourIndex = index.get(neighbour);
+                if (neighbourIndex == null) {
+                    throw new RuntimeException("Node " + node.name + " has unknown neighbour " + neighbour);
+                }
+                inputs[position++] = neighbourIndex;
+            }
+
+            if (runLength(node.truths, node.neighbours.size())) {
+                runNodes[runCount] = counter;
+                runTables[runCount++] = node.truths.copy();
+            } else {
+                pack(node.truths, node.neighbours.size(), truths, truthStart[counter]);
+            }
+
+            if (node.state) state[counter >>> 6] |= 1L << counter;
+            counter++;
+        }
+
+        return new CompiledNetwork(names, inputStart, inputs, truthStart, truths, runNodes, runTables, state);
+    }
+
+    /**
+     * Whether a node's truth table is kept run-length encoded when compiled: when the node holds it that way and it
+     * has no true rows past the end of the table
+     */
+    private static boolean runLength(TruthTable table, int inputs) {
+        return table.isRunLength() && table.length() <= 1 << inputs;
+    }
+
+    /**
+     * Sets the true rows of a truth table in a slice of packed words, which must be clear, ignoring rows past the end
+     */
+    private static void pack(TruthTable table, int inputs, long[] truths, int start) {
+        int rows = 1 << inputs;
+        long base = (long) start << 6;
+        for (int row = table.nextSetBit(0); row >= 0 && row < rows; row = table.nextSetBit(row + 1)) {
+            long bit = base + row;
+            truths[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Builds a compiled network directly from its flat arrays, for code that generates or reads networks in compiled
+     * form without building BNNodes. The arrays are checked to be consistent with each other, so that a network that
+     * is built fails here rather than during simulation, but are used as they are, not copied.
+     * @param names node names, in strictly ascending natural order
+     * @param inputStart offset of each node's inputs in inputs, length names.length + 1
+     * @param inputs neighbour node indices, first neighbour of each node is the most significant row bit
+     * @param truthStart offset (in words) of each node's truth table in truths, length names.length + 1
+     * @param truths packed truth tables
+     * @param state packed initial state
+     * @return compiled network
+     */
+    public static CompiledNetwork of(String[] names, int[] inputStart, int[] inputs, int[] truthStart, long[] truths,
+                                     long[] state) {
+        return of(names, inputStart, inputs, truthStart, truths, new int[0], new TruthTable[0], state);
+    }
+
+    /**
+     * Builds a compiled network directly from its flat arrays, with some truth tables run-length encoded. See
+     * of(String[], int[], int[], int[], long[], long[]).
+     * @param names node names, in strictly ascending natural order
+     * @param inputStart offset of each node's inputs in inputs, length names.length + 1
+     * @param inputs neighbour node indices, first neighbour of each node is the most significant row bit
+     * @param truthStart offset (in words) of each node's truth table in truths, length names.length + 1. A node with a
+     *                   run-length encoded table has no words
+     * @param truths packed truth tables
+     * @param runNodes nodes whose truth tables are run-length encoded, in ascending order
+     * @param runTables truth table of each node in runNodes, owned by the compiled network from then on
+     * @param state packed initial state
+     * @return compiled network
+     */
+    public static CompiledNetwork of(String[] names, int[] inputStart, int[] inputs, int[] truthStart, long[] truths,
+                                     int[] runNodes, TruthTable[] runTables, long[] state) {
+        int size = names.length;
+        if (inputStart.length != size + 1 || truthStart.length != size + 1) {
+            throw new IllegalArgumentException("inputStart and truthStart must have one entry per node plus one");
+        }
+        if (inputStart[0] != 0 || truthStart[0] != 0) {
+            throw new IllegalArgumentException("inputStart and truthStart must start at 0");
+        }
+        if (inputStart[size] != inputs.length || truthStart[size] != truths.length) {
+            throw new IllegalArgumentException("inputs or truths length does not match the offsets");
+        }
+        if (runNodes.length != runTables.length) {
+            throw new IllegalArgumentException("runNodes and runTables must have the same length");
+        }
+        if (state.length != stateWords(size)) {
+            throw new IllegalArgumentException("State has " + state.length + " words, expected " + stateWords(size));
+        }
+        int run = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && names[i - 1].compareTo(names[i]) >= 0) {
+                throw new IllegalArgumentException("Node names are not in ascending order at " + names[i]);
+            }
+            int count = inputStart[i + 1] - inputStart[i];
+            if (count < 0 || count > MAX_INPUTS) {
+                throw new IllegalArgumentException("Node " + names[i] + " has " + count + " inputs");
+            }
+            boolean runLength = run < runNodes.length && runNodes[run] == i;
+            if (runLength && runTables[run++].length() > 1 << count) {
+                throw new IllegalArgumentException("Truth table of node " + names[i] + " has rows past its end");
+            }
+            if (truthStart[i + 1] - truthStart[i] != (runLength ? 0 : truthWords(count))) {
+                throw new IllegalArgumentException("Truth table of node " + names[i] + " has the wrong size");
+            }
+            for (int j = inputStart[i]; j < inputStart[i + 1]; j++) {
+                if (inputs[j] < 0 || inputs[j] >= size) {
+                    throw new IllegalArgumentException("Node " + names[i] + " has unknown input " + inputs[j]);
+                }
+            }
+        }
+        if (run != runNodes.length) {
+            throw new IllegalArgumentException("runNodes must be ascending node indices");
+        }
+        return new CompiledNetwork(names, inputStart, inputs, truthStart, truths, runNodes, runTables, state);
+    }
+
+    /**
+     * Number of long words needed to hold a truth table for a node with the given number of neighbours
+     */
+    public static int truthWords(int neighbours) {
+        return neighbours >= 6 ? 1 << (neighbours - 6) : 1;
+    }
+
+    /**
+     * Number of long words needed to hold the packed state of a network of the given size
+     */
+    public static int stateWords(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * @return number of nodes in the network
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param node node index
+     * @return name of the node
+     */
+    public String name(int node) {
+        return names[node];
+    }
+
+    /**
+     * Finds the index of a node from its name
+     * @param name node name
+     * @return index of the node, or a negative number if no node has that name
+     */
+    public int indexOf(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    /**
+     * @param node node index
+     * @return number of neighbour inputs to the node
+     */
+    public int inputCount(int node) {
+        return inputStart[node + 1] - inputStart[node];
+    }
+
+    /**
+     * @param node node index
+     * @param position position of the input, 0 being the first neighbour (most significant truth table row bit)
+     * @return index of the neighbour node
+     */
+    public int input(int node, int position) {
+        return inputStart[node] + position < inputStart[node + 1] ? inputs[inputStart[node] + position] : -1;
+    }
+
+    /**
+     * @param node node index
+     * @param row truth table row
+     * @return output of the node's truth table for the given row
+     */
+    public boolean truth(int node, int row) {
+        int start = truthStart[node];
+        if (start == truthStart[node + 1]) return runTable(node).get(row);
+        long bit = ((long) start << 6) + row;
+        return (truths[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Sets a truth table row of a node
+     * @param node node index
+     * @param row truth table row
+     * @param value new output for the row
+     */
+    public void setTruth(int node, int row, boolean value) {
+        if (truthStart[node] == truthStart[node + 1]) {
+            runTable(node).set(row, value);
+            return;
+        }
+        long bit = ((long) truthStart[node] << 6) + row;
+        if (value) truths[(int) (bit >>> 6)] |= 1L << bit;
+        else truths[(int) (bit >>> 6)] &= ~(1L << bit);
+    }
+
+    /**
+     * Flips a truth table row of a node
+     * @param node node index
+     * @param row truth table row
+     */
+    public void flipTruth(int node, int row) {
+        if (truthStart[node] == truthStart[node + 1]) {
+            runTable(node).flip(row);
+            return;
+        }
+        long bit = ((long) truthStart[node] << 6) + row;
+        truths[(int) (bit >>> 6)] ^= 1L << bit;
+    }
+
+    /**
+     * Replaces a node's inputs and truth table in place, as a wiring edit does to a BNNode. Only the node's slices of
+     * the flat arrays are rewritten, and the slices after it shifted when the number of inputs changes, so an edit
+     * costs far less than compiling the network again.
+     * @param node node index
+     * @param nodeInputs indices of the node's new inputs, first input is the most significant row bit
+     * @param table new truth table, copied. Rows past the end of the table are ignored
+     */
+    public void setNode(int node, int[] nodeInputs, TruthTable table) {
+        int size = names.length;
+        if (nodeInputs.length > MAX_INPUTS) {
+            throw new IllegalArgumentException("Node " + names[node] + " has " + nodeInputs.length + " inputs");
+        }
+        for (int input : nodeInputs) {
+            if (input < 0 || input >= size) {
+                throw new IllegalArgumentException("Node " + names[node] + " has unknown input " + input);
+            }
+        }
+
+        int shift = nodeInputs.length - inputCount(node);
+        if (shift != 0) {
+            int end = inputStart[node + 1];
+            int[] resized = new int[inputs.length + shift];
+            System.arraycopy(inputs, 0, resized, 0, inputStart[node]);
+            System.arraycopy(inputs, end, resized, end + shift, inputs.length - end);
+            inputs = resized;
+            for (int i = node + 1; i <= size; i++) inputStart[i] += shift;
+        }
+        System.arraycopy(nodeInputs, 0, inputs, inputStart[node], nodeInputs.length);
+
+        //Keep the table run-length encoded exactly when compile would
+        boolean runLength = runLength(table, nodeInputs.length);
+        int run = Arrays.binarySearch(runNodes, node);
+        if (runLength && run >= 0) {
+            runTables[run] = table.copy();
+        } else if (runLength) {
+            run = -run - 1;
+            int[] nodes = new int[runNodes.length + 1];
+            TruthTable[] tables = new TruthTable[runTables.length + 1];
+            System.arraycopy(runNodes, 0, nodes, 0, run);
+            System.arraycopy(runTables, 0, tables, 0, run);
+            System.arraycopy(runNodes, run, nodes, run + 1, runNodes.length - run);
+            System.arraycopy(runTables, run, tables, run + 1, runTables.length - run);
+            nodes[run] = node;
+            tables[run] = table.copy();
+            runNodes = nodes;
+            runTables = tables;
+        } else if (run >= 0) {
+            int[] nodes = new int[runNodes.length - 1];
+            TruthTable[] tables = new TruthTable[runTables.length - 1];
+            System.arraycopy(runNodes, 0, nodes, 0, run);
+            System.arraycopy(runTables, 0, tables, 0, run);
+            System.arraycopy(runNodes, run + 1, nodes, run, nodes.length - run);
+            System.arraycopy(runTables, run + 1, tables, run, tables.length - run);
+            runNodes = nodes;
+            runTables = tables;
+        }
+
+        int words = runLength ? 0 : truthWords(nodeInputs.length);
+        shift = words - (truthStart[node + 1] - truthStart[node]);
+        if (shift != 0) {
+            int end = truthStart[node + 1];
+            long[] resized = new long[truths.length + shift];
+            System.arraycopy(truths, 0, resized, 0, truthStart[node]);
+            System.arraycopy(truths, end, resized, end + shift, truths.length - end);
+            truths = resized;
+            for (int i = node + 1; i <= size; i++) truthStart[i] += shift;
+        }
+        if (!runLength) {
+            Arrays.fill(truths, truthStart[node], truthStart[node + 1], 0L);
+            pack(table, nodeInputs.length, truths, truthStart[node]);
+        }
+    }
+
+    /**
+     * @param node node index
+     * @return a copy of the node's truth table
+     */
+    public TruthTable truthTable(int node) {
+        if (truthStart[node] == truthStart[node + 1]) return runTable(node).copy();
+
+        long[] packed = Arrays.copyOfRange(truths, truthStart[node], truthStart[node + 1]);
+        //Ignore any bits past the end of a table shorter than a word
+        int rows = 1 << inputCount(node);
+        if (rows < 64) packed[0] &= (1L << rows) - 1;
+        return TruthTable.valueOf(packed);
+    }
+
+    /**
+     * @param node node index, which must have a run-length encoded truth table (no words in truths)
+     * @return the node's truth table
+     */
+    TruthTable runTable(int node) {
+        return runTables[Arrays.binarySearch(runNodes, node)];
+    }
+
+    /**
+     * @param node node index
+     * @return current state of the node
+     */
+    public boolean get(int node) {
+        return (state[node >>> 6] & (1L << node)) != 0;
+    }
+
+    /**
+     * Sets the current state of a node
+     * @param node node index
+     * @param value new state
+     */
+    public void set(int node, boolean value) {
+        if (value) state[node >>> 6] |= 1L << node;
+        else state[node >>> 6] &= ~(1L << node);
+    }
+
+    /**
+     * Gives the current packed network state. The returned array is the live state buffer, not a copy, and is swapped
+     * out on every iteration, so it should not be held on to across calls to iterate.
+     * @return packed state, node i is bit (i &amp; 63) of word (i &gt;&gt;&gt; 6)
+     */
+    public long[] state() {
+        return state;
+    }
+
+    /**
+     * Copies a packed state into the network's current state
+     * @param newState packed state, as returned by state()
+     */
+    public void setState(long[] newState) {
+        System.arraycopy(newState, 0, state, 0, words);
+    }
+
+    /**
+     * Computes the next state of a single node from a given packed network state
+     * @param node node index
+     * @param from packed network state to read neighbour states from
+     * @return next state of the node
+     */
+    public boolean evaluate(int node, long[] from) {
+        int row = 0;
+        for (int i = inputStart[node]; i < inputStart[node + 1]; i++) {
+            int input = inputs[i];
+            row = (row << 1) | (int) ((from[input >>> 6] >>> input) & 1L);
+        }
+        return truth(node, row);
+    }
+
+    /**
+     * Computes one synchronous update from one packed state into another. The two arrays must be distinct.
+     * @param from packed state to update from
+     * @param to packed state to write the result to
+     */
+    public void step(long[] from, long[] to) {
+        int size = names.length;
+        for (int w = 0; w < words; w++) {
+            long word = 0;
+            int end = Math.min(size, (w + 1) << 6);
+            for (int node = w << 6; node < end; node++) {
+                if (evaluate(node, from)) word |= 1L << node;
+            }
+            to[w] = word;
+        }
+    }
+
+    /**
+     * Iterates the network a specified number of times using the internal double-buffered state
+     * @param iterations number of iterations
+     */
+    public void iterate(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            step(state, next);
+            long[] swap = state;
+            state = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Sets node states from a mapping of node names and states. Names not in the network are ignored.
+     * @param networkState Map of Strings (node names) and Boolean values
+     */
+    public void loadStates(Map<String, Boolean> networkState) {
+        networkState.forEach((K,V) -> {
+            int node = indexOf(K);
+            if (node >= 0) set(node, V);
+        });
+    }
+
+    /**
+     * Copies the states of the nodes in a network into the compiled network
+     * @param network network with the same node names as this compiled network
+     */
+    public void loadStates(TreeMap<String, BNNode> network) {
+        int counter = 0;
+        for (BNNode node : network.values()) set(counter++, node.state);
+    }
+
+    /**
+     * Copies the current compiled states back onto the nodes of a network
+     * @param network network with the same node names as this compiled network
+     */
+    public void storeStates(TreeMap<String, BNNode> network) {
+        int counter = 0;
+        for (BNNode node : network.values()) node.state = get(counter++);
+    }
+
+    /**
+     * Builds a TreeMap network of BNNodes equivalent to this compiled network, including current states
+     * @return a TreeMap of String (node name) and BNNode pairs, representing the network
+     */
+    public TreeMap<String, BNNode> toNetwork() {
+        TreeMap<String, BNNode> output = new TreeMap<>();
+
+        for (int node = 0; node < names.length; node++) {
+            LinkedHashSet<String> neighbours = new LinkedHashSet<>();
+            for (int i = inputStart[node]; i < inputStart[node + 1]; i++) neighbours.add(names[inputs[i]]);
+
+            output.put(names[node], new BNNode(names[node], get(node), neighbours, truthTable(node)));
+        }
+
+        return output;
+    }
+
+    /**
+     * @return an independent copy of this compiled network, including wiring, truth tables and current states
+     */
+    public CompiledNetwork copy() {
+        TruthTable[] tables = new TruthTable[runTables.length];
+        for (int i = 0; i < tables.length; i++) tables[i] = runTables[i].copy();
+        return new CompiledNetwork(names, inputStart.clone(), inputs.clone(), truthStart.clone(), truths.clone(),
+                runNodes.clone(), tables, state);
+    }
+}
@@ -30,6 +30,27 @@ public class FileOut {
         printArray(toPrint, fileName + ".txt", filePath);
     }
 
+    /**
+     * Save a Boolean network in the compact binary format (see BinaryFormat), which loads far faster than the text
+     * format written by output. Saved as fileName.bnb
+     * @param network Boolean network to save
+     * @param fileName
+     * @param filePath
+     */
+    public static void outputBinary(TreeMap<String, BNNode> network, String fileName, String filePath) {
+        outputBinary(CompiledNetwork.compile(network), fileName, filePath);
+    }
+
+    /**
+     * Save a compiled Boolean network in the compact binary format (see BinaryFormat). Saved as fileName.bnb
+     * @param network compiled Boolean network to save
+     * @param fileName
+     * @param filePath
+     */
+    public static void outputBinary(CompiledNetwork network, String fileName, String filePath) {
+        BinaryFormat.write(network, Paths.get(filePath, fileName + ".bnb"));
+    }
+
     /**
      * Save the network as a Graphviz (.gv) compatible file
      * @param network Boolean network to save
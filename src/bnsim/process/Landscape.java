@@ -0,0 +1,222 @@
+package bnsim.process;
+
+import bnsim.nodes.BNNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * The complete attractor landscape of a small Boolean network: every attractor and the size of its basin of
+ * attraction, found by sweeping all 2^N network states. A state is encoded as an int with node i as bit i, which is
+ * also its packed CompiledNetwork form.
+ * <p>
+ * The sweep runs in two parallel passes over chunks of the state space. The first finds every attractor, using a
+ * bitset with one bit per state to record states whose attractor is already known so that no trajectory is walked
+ * twice. The second labels every state with its attractor, using the fewest bits per state that can hold an attractor
+ * id, and counts basin sizes per chunk before merging them.
+ */
+public class Landscape {
+    public static final int MAX_NODES = 30; //Largest network that can be enumerated
+    private static final int CHUNK_BITS = 16; //Each parallel task sweeps 2^CHUNK_BITS states
+
+    public final List<Attractor> attractors; //Every attractor, cycles starting from their smallest state
+    public final long[] basinSizes; //Number of states that lead to each attractor, including its cycle states
+
+    private Landscape(List<Attractor> attractors, long[] basinSizes) {
+        this.attractors = Collections.unmodifiableList(attractors);
+        this.basinSizes = basinSizes;
+    }
+
+    /**
+     * Enumerates the attractor landscape of a network. Node states are not used or modified.
+     * @param network network of at most MAX_NODES nodes
+     * @return every attractor and its basin size
+     */
+    public static Landscape enumerate(TreeMap<String, BNNode> network) {
+        return enumerate(CompiledNetwork.compile(network));
+    }
+
+    /**
+     * Enumerates the attractor landscape of a compiled network. The network's state is not used or modified.
+     * @param network compiled network of at most MAX_NODES nodes
+     * @return every attractor and its basin size
+     */
+    public static Landscape enumerate(CompiledNetwork network) {
+        int size = network.size();
+        if (size > MAX_NODES) {
+            throw new IllegalArgumentException("Network has " + size + " nodes, at most " + MAX_NODES + " can be enumerated");
+        }
+
+        long states = 1L << size;
+        int chunks = (int) Math.max(1, states >>> CHUNK_BITS);
+        long chunkSize = states / chunks;
+
+        //Pass 1: find every attractor, keyed by the smallest state in its cycle
+        Set<Integer> cycles = findAttractors(network, states, chunks, chunkSize);
+
+        //Number attractors in order of their smallest state so results do not depend on scheduling
+        int[] keys = cycles.stream().mapToInt(Integer::intValue).sorted().toArray();
+        int labelBits = 1;
+        while (labelBits < 32 && (1L << labelBits) <= keys.length) labelBits <<= 1;
+        int bits = labelBits;
+
+        //Pass 2: label every state with its attractor (label 0 meaning not yet labelled) and count basin sizes
+        AtomicLongArray labels = new AtomicLongArray((int) Math.max(1, (states * bits + 63) >>> 6));
+        List<Attractor> attractors = new ArrayList<>(keys.length);
+        Successor successor = new Successor(network);
+        for (int i = 0; i < keys.length; i++) {
+            int length = 0;
+            int x = keys[i];
+            do {
+                setLabel(labels, bits, x, i + 1);
+                x = successor.next(x);
+                length++;
+            } while (x != keys[i]);
+
+            long[][] cycle = new long[length][];
+            for (int j = 0; j < length; j++, x = successor.next(x)) cycle[j] = new long[] {x};
+            attractors.add(new Attractor(0, cycle, size));
+        }
+
+        long[] basinSizes = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            Successor next = new Successor(network);
+            long[] counts = new long[keys.length];
+            int end = (int) ((chunk + 1) * chunkSize);
+            for (int state = (int) (chunk * chunkSize); state < end; state++) {
+                int label = getLabel(labels, bits, state);
+                if (label == 0) {
+                    int x = state;
+                    while ((label = getLabel(labels, bits, x)) == 0) x = next.next(x);
+                    for (x = state; getLabel(labels, bits, x) == 0; x = next.next(x)) setLabel(labels, bits, x, label);
+                }
+                counts[label - 1]++;
+            }
+            return counts;
+        }).reduce(new long[keys.length], (a, b) -> {
+            long[] sum = new long[a.length];
+            for (int i = 0; i < sum.length; i++) sum[i] = a[i] + b[i];
+            return sum;
+        });
+
+        return new Landscape(attractors, basinSizes);
+    }
+
+    /**
+     * Finds every attractor of a network. The bitset of states with a known attractor is only needed for this pass,
+     * so it is dropped once the pass returns.
+     * @return the smallest cycle state of each attractor
+     */
+    private static Set<Integer> findAttractors(CompiledNetwork network, long states, int chunks, long chunkSize) {
+        AtomicLongArray known = new AtomicLongArray((int) Math.max(1, states >>> 6));
+        Set<Integer> cycles = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            Successor successor = new Successor(network);
+            int end = (int) ((chunk + 1) * chunkSize);
+            for (int state = (int) (chunk * chunkSize); state < end; state++) {
+                if (isSet(known, state)) continue;
+
+                int cycleState = findCycle(successor, known, state);
+                if (cycleState >= 0) cycles.add(smallestInCycle(successor, cycleState));
+
+                //Every state on the walk now leads to a known attractor
+                for (int x = state; !isSet(known, x); x = successor.next(x)) setBit(known, x);
+            }
+        });
+
+        return cycles;
+    }
+
+    /**
+     * Walks forward from a state using Brent's algorithm until it either enters a cycle or reaches a state whose
+     * attractor is already known
+     * @return a state on the cycle, or -1 if a known state was reached first
+     */
+    private static int findCycle(Successor successor, AtomicLongArray known, int start) {
+        int tortoise = start;
+        int hare = successor.next(start);
+        int power = 1;
+        int length = 1;
+        while (tortoise != hare) {
+            if (isSet(known, hare)) return -1;
+            if (power == length) {
+                tortoise = hare;
+                power <<= 1;
+                length = 0;
+            }
+            hare = successor.next(hare);
+            length++;
+        }
+        return hare;
+    }
+
+    private static int smallestInCycle(Successor successor, int cycleState) {
+        int smallest = cycleState;
+        for (int x = successor.next(cycleState); x != cycleState; x = successor.next(x)) {
+            if (x < smallest) smallest = x;
+        }
+        return smallest;
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        long mask = 1L << index;
+        bits.getAndAccumulate(index >>> 6, mask, (a, b) -> a | b);
+    }
+
+    private static int getLabel(AtomicLongArray labels, int bits, int state) {
+        long position = (long) state * bits;
+        long mask = bits == 64 ? -1L : (1L << bits) - 1;
+        return (int) ((labels.get((int) (position >>> 6)) >>> position) & mask);
+    }
+
+    /**
+     * Labels are only ever written from 0 to a state's one true attractor, so racing writers set the same bits and an
+     * atomic OR is enough
+     */
+    private static void setLabel(AtomicLongArray labels, int bits, int state, int label) {
+        long position = (long) state * bits;
+        labels.getAndAccumulate((int) (position >>> 6), (long) label << position, (a, b) -> a | b);
+    }
+
+    /**
+     * Computes the successor of an int-encoded state, reusing its state buffers
+     */
+    private static class Successor {
+        private final CompiledNetwork network;
+        private final long[] from = new long[1];
+        private final long[] to = new long[1];
+
+        Successor(CompiledNetwork network) {
+            this.network = network;
+        }
+
+        int next(int state) {
+            from[0] = state & 0xFFFFFFFFL;
+            network.step(from, to);
+            return (int) to[0];
+        }
+    }
+
+    /**
+     * @param attractor index of an attractor in attractors
+     * @return fraction of the state space in the attractor's basin
+     */
+    public double basinFraction(int attractor) {
+        return basinSizes[attractor] / (double) totalStates();
+    }
+
+    /**
+     * @return total number of network states
+     */
+    public long totalStates() {
+        long total = 0;
+        for (long basin : basinSizes) total += basin;
+        return total;
+    }
+}
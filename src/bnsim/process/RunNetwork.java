@@ -74,4 +74,49 @@ public class    RunNetwork {
             for (BNNode node : network.values()) node.update(currentState);
         }
     }
-}
+
+    /**
+     * Iterates a compiled network specified number of times, returns the network state after that many iterations as
+     * mapping of String node names and Boolean node states
+     * @param network compiled network to iterate
+     * @param iterations number of iterations, zero gives the current (unmodified) network state
+     * @return mapping of String names and Boolean states
+     */
+    public static Map<String, Boolean> iterateMap(CompiledNetwork network, int iterations){
+        network.iterate(iterations);
+
+        LinkedHashMap<String, Boolean> finalTrace = new LinkedHashMap<>();
+        for (int i = 0; i < network.size(); i++) finalTrace.put(network.name(i), network.get(i));
+
+        return finalTrace;
+    }
+
+    /**
+     * Iterates a compiled network specified number of times, returns a String representing node states. 1 = true,
+     * 0 = false. Ordered according to natural ordering of node names
+     * @param network compiled network to iterate
+     * @param iterations number of iterations, zero gives the current (unmodified) network state
+     * @return String representation of network state
+     */
+    public static String iterateStrTrace(CompiledNetwork network, int iterations){
+        network.iterate(iterations);
+
+        StringBuilder finalTrace = new StringBuilder(network.size());
+        for (int i = 0; i < network.size(); i++) finalTrace.append(network.get(i) ? 1 : 0);
+
+        return finalTrace.toString();
+    }
+
+    /**
+     * Iterates a compiled network specified number of times. Outputs a BitSet of node states, states ordered according
+     * to natural order of node names
+     * @param network compiled network to iterate
+     * @param iterations number of iterations, zero gives the current (unmodified) network state
+     * @return BitSet representation of network state
+     */
+    public static BitSet iterateBitSet(CompiledNetwork network, int iterations){
+        network.iterate(iterations);
+
+        return BitSet.valueOf(network.state());
+    }
+}
\ No newline at end of file
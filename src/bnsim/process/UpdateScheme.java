@@ -0,0 +1,61 @@
+package bnsim.process;
+
+/**
+ * A rule for advancing the state of a compiled network by one step. Besides the usual synchronous update, where every
+ * node is updated at once from the previous state, the asynchronous schemes update nodes one at a time (or a block at a
+ * time), each update seeing the results of the ones before it.
+ * <p>
+ * The random schemes are seeded and draw their random numbers in batches from a SplittableRandom, so a run is
+ * repeatable. They hold their generator as state, so a scheme should only be used by one thread at a time.
+ */
+public interface UpdateScheme {
+
+    /**
+     * Advances the network's current state by one step
+     * @param network network to update in place
+     */
+    void step(CompiledNetwork network);
+
+    /**
+     * Advances the network's current state by a number of steps
+     * @param network network to update in place
+     * @param steps number of steps
+     */
+    default void iterate(CompiledNetwork network, int steps) {
+        for (int i = 0; i < steps; i++) step(network);
+    }
+
+    /**
+     * @return scheme where every node is updated at once from the previous state, as CompiledNetwork.iterate
+     */
+    static UpdateScheme synchronous() {
+        return network -> network.iterate(1);
+    }
+
+    /**
+     * @param seed seed for the update order
+     * @return scheme where each step updates every node once, one at a time, in a new random order each step
+     */
+    static UpdateScheme randomSequential(long seed) {
+        return new UpdateSchemes.RandomSequential(seed);
+    }
+
+    /**
+     * @param blocks node indices of each block, in update order. Each step updates the blocks one after another, with
+     *               the nodes of a block updated synchronously from the state left by the previous block. Nodes in no
+     *               block keep their state
+     * @return block-sequential scheme
+     */
+    static UpdateScheme blockSequential(int[][] blocks) {
+        return new UpdateSchemes.BlockSequential(blocks);
+    }
+
+    /**
+     * @param seed seed for the choice of nodes
+     * @return scheme where each step makes as many updates as there are nodes, each to a node chosen uniformly at
+     *         random, so some nodes may be updated several times in a step and others not at all
+     */
+    static UpdateScheme stochasticAsynchronous(long seed) {
+        return new UpdateSchemes.StochasticAsynchronous(seed);
+    }
+}
@@ -0,0 +1,118 @@
+package bnsim.process;
+
+import java.util.SplittableRandom;
+
+/**
+ * Implementations of the asynchronous update schemes created by UpdateScheme
+ */
+class UpdateSchemes {
+
+    /**
+     * Buffer of random 32 bit values, refilled in bulk so the update loops only read an array
+     */
+    static class BatchedRandom {
+        private static final int BATCH = 1 << 10;
+        private final SplittableRandom random;
+        private final int[] batch = new int[BATCH];
+        private int position = BATCH;
+
+        BatchedRandom(long seed) {
+            this.random = new SplittableRandom(seed);
+        }
+
+        /**
+         * @return random int between 0 (inclusive) and bound (exclusive), by multiply-shift of a 32 bit value
+         */
+        int nextInt(int bound) {
+            if (position == BATCH) {
+                for (int i = 0; i < BATCH; i += 2) {
+                    long value = random.nextLong();
+                    batch[i] = (int) value;
+                    batch[i + 1] = (int) (value >>> 32);
+                }
+                position = 0;
+            }
+            return (int) (((batch[position++] & 0xFFFFFFFFL) * bound) >>> 32);
+        }
+    }
+
+    static class RandomSequential implements UpdateScheme {
+        private final BatchedRandom random;
+        private int[] order = new int[0];
+
+        RandomSequential(long seed) {
+            this.random = new BatchedRandom(seed);
+        }
+
+        @Override
+        public void step(CompiledNetwork network) {
+            int size = network.size();
+            if (order.length != size) {
+                order = new int[size];
+                for (int i = 0; i < size; i++) order[i] = i;
+            }
+
+            //Fisher-Yates shuffle of the previous order gives a uniformly random new one
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+
+            long[] state = network.state();
+            for (int node : order) update(network, state, node);
+        }
+    }
+
+    static class BlockSequential implements UpdateScheme {
+        private final int[][] blocks;
+        private final boolean[] values; //Next states of the block being updated
+
+        BlockSequential(int[][] blocks) {
+            this.blocks = new int[blocks.length][];
+            int largest = 0;
+            for (int i = 0; i < blocks.length; i++) {
+                this.blocks[i] = blocks[i].clone();
+                largest = Math.max(largest, blocks[i].length);
+            }
+            this.values = new boolean[largest];
+        }
+
+        @Override
+        public void step(CompiledNetwork network) {
+            long[] state = network.state();
+            for (int[] block : blocks) {
+                for (int i = 0; i < block.length; i++) values[i] = network.evaluate(block[i], state);
+                for (int i = 0; i < block.length; i++) set(state, block[i], values[i]);
+            }
+        }
+    }
+
+    static class StochasticAsynchronous implements UpdateScheme {
+        private final BatchedRandom random;
+
+        StochasticAsynchronous(long seed) {
+            this.random = new BatchedRandom(seed);
+        }
+
+        @Override
+        public void step(CompiledNetwork network) {
+            int size = network.size();
+            long[] state = network.state();
+            for (int i = 0; i < size; i++) update(network, state, random.nextInt(size));
+        }
+    }
+
+    /**
+     * Updates a single node in place, so later updates in the same step see its new state
+     */
+    private static void update(CompiledNetwork network, long[] state, int node) {
+        set(state, node, network.evaluate(node, state));
+    }
+
+    private static void set(long[] state, int node, boolean value) {
+        if (value) state[node >>> 6] |= 1L << node;
+        else state[node >>> 6] &= ~(1L << node);
+    }
+}
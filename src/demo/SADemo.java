@@ -1,17 +1,17 @@
 package demo;
 
 import bnsim.nodes.BNNode;
-import simAnneal.Cooling;
-import simAnneal.NeighbourGen;
-import simAnneal.Utility;
+import simAnneal.Annealer;
+import simAnneal.CoolingSchedule;
+import simAnneal.MoveGenerator;
+import simAnneal.ObjectiveFunction;
+import simAnneal.TemperatureCalibration;
 
 import java.util.Map;
-import java.util.Random;
 import java.util.TreeMap;
 
 import static bnsim.generator.NetworkGen.*;
 import static bnsim.process.RunNetwork.*;
-import static simAnneal.Objective.scoreNetwork;
 
 /**
  * An example implementation of the Simulated Annealing algorithm using components from the simAnneal package. Prints
@@ -25,48 +25,29 @@ public class SADemo {
         //Specify a desired trace (network attractor)
         String desiredTrace = "1111111,0000000,1111111";
 
-        //Set starting temperature & cooling factor
-        double tempCurrent = 1000.0;
-        double coolingFactor = 0.90;
-
         //Save the initial state of the test network
         Map<String, Boolean> initialState = iterateMap(testNet, 0);
 
-        //Set initial solution
-        TreeMap<String, BNNode> currentSol = testNet;
-
-        //Set initial score
-        int currentScore = scoreNetwork(testNet, desiredTrace);
-
-        //Simulated annealing loop
-        Random random = new Random();
-        System.out.println("Starting score: " + currentScore);
-        for (int i = 0; i < 1000; i++) {
-            //Decrement temperature
-            tempCurrent = Cooling.expCool(i, coolingFactor, tempCurrent);
-
-            //Generate a new candidate and set starting state
-            TreeMap<String, BNNode> candidate = NeighbourGen.genRandFixed(currentSol, 8, 4);
-            Utility.setState(candidate, initialState);
+        //Flip 8 truth table rows per candidate, scored against the desired trace
+        MoveGenerator move = MoveGenerator.fixed(8, 4);
+        ObjectiveFunction objective = ObjectiveFunction.trace(desiredTrace, initialState);
 
-            //Score candidate and calculate difference with current solution
-            int candScore = scoreNetwork(candidate, desiredTrace);
-            int delta = candScore - currentScore;
+        //Pick starting and final temperatures by sampling moves from the test network
+        TemperatureCalibration.Result calibration = new TemperatureCalibration(move, objective).calibrate(testNet);
+        System.out.println("Calibration: " + calibration);
 
-            //Accept if improvement
-            if (delta < 0) {
-                currentSol = candidate;
-                currentScore = candScore;
-                System.out.println(i + " : " + candScore);
-            }
+        //Assemble the annealer: exponential cooling between the calibrated temperatures over at most 1000 iterations,
+        //stopping early if the desired trace is matched exactly
+        Annealer annealer = new Annealer(CoolingSchedule.exponential(calibration.coolingFactor(1000)), move, objective)
+                .startingTemp(calibration.startingTemp)
+                .maxIterations(1000)
+                .targetScore(0);
 
-            //Accept if worse but passes acceptance criterion
-            else if (delta > 0 && random.nextDouble(0,1) < Math.exp(-delta/tempCurrent)) {
-                currentSol = candidate;
-                currentScore = candScore;
-                System.out.println(i + " : " + candScore);
-            }
-        }
-        System.out.println("Final score: " + currentScore);
+        //Simulated annealing loop
+        Annealer.Result result = annealer.run(testNet);
+        System.out.println("Starting score: " + result.startingScore);
+        System.out.println("Accepted candidates: " + result.accepted);
+        System.out.println("Final score: " + result.finalScore);
+        System.out.println("Stopped after " + result.iterations + " iterations: " + result.termination);
     }
 }
@@ -0,0 +1,256 @@
+package simAnneal;
+
+import java.util.Arrays;
+
+/**
+ * Cooling schedules that adapt the temperature to how the run is going rather than following a fixed curve. Each is
+ * told the outcome of every iteration through CoolingSchedule.observe and applies any adjustment on the next call to
+ * next. They keep state, so a new instance is needed for each run; create them with the CoolingSchedule factories.
+ * The state is exposed through CoolingSchedule.state and restore so that checkpoints can save it.
+ */
+public class AdaptiveCooling {
+
+    /**
+     * Holds the ratio of accepted uphill (worse) candidates near a target. After every window iterations the
+     * temperature is multiplied by factor if too many uphill candidates were accepted, or divided by it if too few
+     * were.
+     */
+    public static class TargetAcceptance implements CoolingSchedule {
+        private final double target;
+        private final int window;
+        private final double factor;
+        private int seen; //Iterations observed in the current window
+        private int uphill; //Worse candidates in the current window
+        private int uphillAccepted; //Worse candidates accepted in the current window
+        private double scale = 1; //Adjustment applied by the next call to next
+
+        /**
+         * @param target target ratio of worse candidates accepted, between 0 and 1
+         * @param window number of iterations between adjustments
+         * @param factor multiplier applied per adjustment, between 0 and 1
+         */
+        TargetAcceptance(double target, int window, double factor) {
+            if (factor <= 0 || factor >= 1) throw new IllegalArgumentException("Factor must be between 0 and 1");
+            this.target = target;
+            this.window = window;
+            this.factor = factor;
+        }
+
+        @Override
+        public double next(int iteration, double currentTemp) {
+            double temp = currentTemp * scale;
+            scale = 1;
+            return temp;
+        }
+
+        @Override
+        public void observe(int score, int delta, boolean accepted) {
+            if (delta > 0) {
+                uphill++;
+                if (accepted) uphillAccepted++;
+            }
+            if (++seen < window) return;
+
+            if (uphill > 0) {
+                double ratio = uphillAccepted / (double) uphill;
+                if (ratio > target) scale = factor;
+                else if (ratio < target) scale = 1 / factor;
+            }
+            seen = uphill = uphillAccepted = 0;
+        }
+
+        @Override
+        public double[] state() {
+            return new double[]{seen, uphill, uphillAccepted, scale};
+        }
+
+        @Override
+        public void restore(double[] state) {
+            CoolingSchedule.checkState(state, 4);
+            seen = (int) state[0];
+            uphill = (int) state[1];
+            uphillAccepted = (int) state[2];
+            scale = state[3];
+        }
+    }
+
+    /**
+     * The modified Lam schedule (Swartz 1993). A running average of the acceptance ratio of candidates whose score
+     * differs from the current solution's is kept, and after every iteration the temperature is cooled by factor if the
+     * ratio is above the target for that point in the run or warmed by it if below, with the target following
+     * Cooling.lamTarget over the run's length.
+     */
+    public static class Lam implements CoolingSchedule {
+        private final int iterations;
+        private final double factor;
+        private double acceptance = 0.5; //Exponential moving average of the acceptance ratio
+
+        /**
+         * @param iterations length of the run, which the target acceptance curve is stretched over
+         * @param factor multiplier applied each iteration, between 0 and 1 and close to 1 (e.g. 0.999)
+         */
+        Lam(int iterations, double factor) {
+            if (factor <= 0 || factor >= 1) throw new IllegalArgumentException("Factor must be between 0 and 1");
+            this.iterations = iterations;
+            this.factor = factor;
+        }
+
+        @Override
+        public double next(int iteration, double currentTemp) {
+            if (iteration == 0) return currentTemp;
+            return acceptance > Cooling.lamTarget(iteration / (double) iterations)
+                    ? currentTemp * factor
+                    : currentTemp / factor;
+        }
+
+        @Override
+        public void observe(int score, int delta, boolean accepted) {
+            //Candidates with an equal score are always rejected whatever the temperature, so they are not counted
+            if (delta != 0) acceptance = 0.998 * acceptance + (accepted ? 0.002 : 0);
+        }
+
+        @Override
+        public double[] state() {
+            return new double[]{acceptance};
+        }
+
+        @Override
+        public void restore(double[] state) {
+            CoolingSchedule.checkState(state, 1);
+            acceptance = state[0];
+        }
+    }
+
+    /**
+     * Cools according to the spread of scores, after Huang, Romeo and Sangiovanni-Vincentelli (1986). After every
+     * window iterations the temperature is multiplied by exp(-lambda * T / sigma), where sigma is the standard
+     * deviation of the current score over the window, so cooling slows while the score is still varying widely
+     * relative to the temperature and speeds up once it settles. A window with no spread at all cools by exp(-lambda).
+     */
+    public static class Variance implements CoolingSchedule {
+        private final double lambda;
+        private final int window;
+        private int seen;
+        private double sum;
+        private double sumSquares;
+        private double sigma = -1; //Standard deviation of the last full window, or -1 if not yet due
+
+        /**
+         * @param lambda cooling rate, typically between 0.1 and 1
+         * @param window number of iterations between adjustments
+         */
+        Variance(double lambda, int window) {
+            this.lambda = lambda;
+            this.window = window;
+        }
+
+        @Override
+        public double next(int iteration, double currentTemp) {
+            if (sigma < 0) return currentTemp;
+            double temp = currentTemp * Math.exp(-lambda * (sigma > 0 ? currentTemp / sigma : 1));
+            sigma = -1;
+            return temp;
+        }
+
+        @Override
+        public void observe(int score, int delta, boolean accepted) {
+            sum += score;
+            sumSquares += (double) score * score;
+            if (++seen < window) return;
+
+            double mean = sum / seen;
+            sigma = Math.sqrt(Math.max(0, sumSquares / seen - mean * mean));
+            seen = 0;
+            sum = sumSquares = 0;
+        }
+
+        @Override
+        public double[] state() {
+            return new double[]{seen, sum, sumSquares, sigma};
+        }
+
+        @Override
+        public void restore(double[] state) {
+            CoolingSchedule.checkState(state, 4);
+            seen = (int) state[0];
+            sum = state[1];
+            sumSquares = state[2];
+            sigma = state[3];
+        }
+    }
+
+    /**
+     * Wraps another schedule and reheats when the run stagnates: if patience iterations pass without a new best score,
+     * the temperature is multiplied by factor.
+     */
+    public static class Reheating implements CoolingSchedule {
+        private final CoolingSchedule schedule;
+        private final int patience;
+        private final double factor;
+        private int best = Integer.MAX_VALUE;
+        private int sinceBest; //Iterations since the best score last improved
+        private int reheats;
+
+        /**
+         * @param schedule schedule to follow between reheats
+         * @param patience iterations without a new best score before reheating
+         * @param factor multiplier applied to the temperature when reheating, greater than 1
+         */
+        Reheating(CoolingSchedule schedule, int patience, double factor) {
+            this.schedule = schedule;
+            this.patience = patience;
+            this.factor = factor;
+        }
+
+        @Override
+        public double next(int iteration, double currentTemp) {
+            double temp = schedule.next(iteration, currentTemp);
+            if (sinceBest >= patience) {
+                sinceBest = 0;
+                reheats++;
+                temp *= factor;
+            }
+            return temp;
+        }
+
+        @Override
+        public void observe(int score, int delta, boolean accepted) {
+            schedule.observe(score, delta, accepted);
+            if (score < best) {
+                best = score;
+                sinceBest = 0;
+            } else {
+                sinceBest++;
+            }
+        }
+
+        @Override
+        public double[] state() {
+            double[] inner = schedule.state();
+            double[] state = new double[inner.length + 3];
+            state[0] = best;
+            state[1] = sinceBest;
+            state[2] = reheats;
+            System.arraycopy(inner, 0, state, 3, inner.length);
+            return state;
+        }
+
+        @Override
+        public void restore(double[] state) {
+            if (state.length < 3) {
+                throw new IllegalArgumentException("Schedule state has " + state.length + " values, expected at least 3");
+            }
+            best = (int) state[0];
+            sinceBest = (int) state[1];
+            reheats = (int) state[2];
+            schedule.restore(Arrays.copyOfRange(state, 3, state.length));
+        }
+
+        /**
+         * @return number of times the temperature has been raised
+         */
+        public int reheats() {
+            return reheats;
+        }
+    }
+}
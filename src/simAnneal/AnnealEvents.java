@@ -0,0 +1,59 @@
+package simAnneal;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events emitted by the annealing loop when a run has RunMetrics with events switched on. Each
+ * event can also be enabled, disabled or thresholded individually in the JFR recording settings.
+ */
+public class AnnealEvents {
+
+    @Name("simAnneal.NeighbourGen")
+    @Label("Neighbour Generation")
+    @Category("Simulated Annealing")
+    @Description("Generation of a candidate by a MoveGenerator")
+    @StackTrace(false)
+    public static final class NeighbourGen extends Event {
+        @Label("Iteration")
+        public int iteration;
+
+        @Label("Rows Flipped")
+        public int moveSize;
+
+        @Label("Wiring Edits")
+        @Description("Inputs rewired, added or removed")
+        public int edits;
+    }
+
+    @Name("simAnneal.Score")
+    @Label("Score")
+    @Category("Simulated Annealing")
+    @Description("Scoring of a candidate by an ObjectiveFunction")
+    @StackTrace(false)
+    public static final class Score extends Event {
+        @Label("Iteration")
+        public int iteration;
+
+        @Label("Score")
+        public int score;
+    }
+
+    @Name("simAnneal.Acceptance")
+    @Label("Acceptance")
+    @Category("Simulated Annealing")
+    @Description("Acceptance test of a candidate")
+    @StackTrace(false)
+    public static final class Acceptance extends Event {
+        @Label("Iteration")
+        public int iteration;
+
+        @Label("Temperature")
+        public double temperature;
+
+        @Label("Delta")
+        public int delta;
+
+        @Label("Accepted")
+        public boolean accepted;
+    }
+}
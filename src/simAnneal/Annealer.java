@@ -0,0 +1,386 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.CompiledNetwork;
+
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.random.RandomGenerator;
+
+import static simAnneal.Utility.copyNetwork;
+
+/**
+ * Reusable Simulated Annealing engine assembled from a CoolingSchedule, a MoveGenerator and an ObjectiveFunction.
+ * Candidates are generated in place on the current solution and committed or rolled back through a MoveJournal, so
+ * the main loop works on primitives and only copies the network when a new best solution is found.
+ * <p>
+ * A worse candidate is accepted with probability exp(-delta / temperature), an improvement is always accepted and a
+ * candidate with an equal score is rejected, as in SADemo. For a bounded objective the acceptance random number is
+ * drawn before scoring, and the objective may stop scoring once the candidate is certain to be rejected, in which case
+ * the score passed to the recorder and metrics is the partial score it stopped at.
+ * <p>
+ * Besides the iteration limit and minimum temperature, a run can stop once its best score reaches a target, or once
+ * it stagnates, going a given number of iterations without a new best score. Given a RestartStrategy, a stagnated or
+ * fully cooled run instead continues from the network the strategy chooses at a reheated temperature, until it runs
+ * out of restarts. Restarts rescore the new network from scratch, so a stateful objective such as incremental cannot
+ * be used with them.
+ */
+public class Annealer {
+    private final CoolingSchedule schedule;
+    private final MoveGenerator move;
+    private final ObjectiveFunction objective;
+    private double startingTemp = 1000.0;
+    private int maxIterations = 1000;
+    private double minTemp = 0.0;
+    private RandomGenerator random = new Rng();
+    private RunRecorder recorder;
+    private RunMetrics metrics;
+    private Path checkpointPath;
+    private int checkpointInterval;
+    private int targetScore = Integer.MIN_VALUE;
+    private int patience;
+    private RestartStrategy restartStrategy;
+    private int maxRestarts;
+    private double restartTemp = Double.NaN;
+
+    /**
+     * Reason an annealing run stopped
+     */
+    public enum Termination {
+        MAX_ITERATIONS, //Reached the iteration limit
+        MIN_TEMPERATURE, //Cooled below the minimum temperature with no restarts left
+        TARGET_SCORE, //Best score reached the target score
+        STAGNATION //Went the patience without a new best score with no restarts left
+    }
+
+    /**
+     * Result of an annealing run
+     */
+    public static class Result {
+        public final TreeMap<String, BNNode> bestNetwork; //Best network found
+        public final int bestScore; //Score of the best network
+        public final TreeMap<String, BNNode> finalNetwork; //Current solution when the run stopped
+        public final int finalScore; //Score of the current solution when the run stopped
+        public final int startingScore; //Score of the starting network
+        public final int iterations; //Number of iterations run
+        public final int accepted; //Number of candidates accepted
+        public final double finalTemp; //Temperature of the last iteration
+        public final int restarts; //Number of restarts made
+        public final Termination termination; //Reason the run stopped
+
+        Result(TreeMap<String, BNNode> bestNetwork, int bestScore, TreeMap<String, BNNode> finalNetwork, int finalScore,
+               int startingScore, int iterations, int accepted, double finalTemp, int restarts,
+               Termination termination) {
+            this.bestNetwork = bestNetwork;
+            this.bestScore = bestScore;
+            this.finalNetwork = finalNetwork;
+            this.finalScore = finalScore;
+            this.startingScore = startingScore;
+            this.iterations = iterations;
+            this.accepted = accepted;
+            this.finalTemp = finalTemp;
+            this.restarts = restarts;
+            this.termination = termination;
+        }
+    }
+
+    /**
+     * @param schedule cooling schedule
+     * @param move move applied to the current solution to generate a candidate
+     * @param objective scores candidates, lower is better
+     */
+    public Annealer(CoolingSchedule schedule, MoveGenerator move, ObjectiveFunction objective) {
+        this.schedule = schedule;
+        this.move = move;
+        this.objective = objective;
+    }
+
+    /**
+     * @param startingTemp temperature before the first iteration, defaults to 1000
+     * @return this annealer
+     */
+    public Annealer startingTemp(double startingTemp) {
+        this.startingTemp = startingTemp;
+        return this;
+    }
+
+    /**
+     * @param maxIterations number of iterations after which the run stops, defaults to 1000
+     * @return this annealer
+     */
+    public Annealer maxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * @param minTemp temperature below which the run stops, defaults to 0
+     * @return this annealer
+     */
+    public Annealer minTemp(double minTemp) {
+        this.minTemp = minTemp;
+        return this;
+    }
+
+    /**
+     * @param targetScore score at or below which the run stops, defaults to none
+     * @return this annealer
+     */
+    public Annealer targetScore(int targetScore) {
+        this.targetScore = targetScore;
+        return this;
+    }
+
+    /**
+     * @param patience number of iterations without a new best score after which the run stagnates, or 0 (the
+     *                 default) to never stagnate
+     * @return this annealer
+     */
+    public Annealer patience(int patience) {
+        if (patience < 0) throw new IllegalArgumentException("Patience must not be negative");
+        this.patience = patience;
+        return this;
+    }
+
+    /**
+     * Restarts a stagnated or fully cooled run, reheating to the starting temperature
+     * @param strategy chooses the network to restart from, or null (the default) to stop instead
+     * @param maxRestarts number of restarts after which the run stops
+     * @return this annealer
+     */
+    public Annealer restarts(RestartStrategy strategy, int maxRestarts) {
+        return restarts(strategy, maxRestarts, Double.NaN);
+    }
+
+    /**
+     * Restarts a stagnated or fully cooled run
+     * @param strategy chooses the network to restart from, or null (the default) to stop instead
+     * @param maxRestarts number of restarts after which the run stops
+     * @param restartTemp temperature the run is reheated to on a restart, or NaN for the starting temperature
+     * @return this annealer
+     */
+    public Annealer restarts(RestartStrategy strategy, int maxRestarts, double restartTemp) {
+        this.restartStrategy = strategy;
+        this.maxRestarts = maxRestarts;
+        this.restartTemp = restartTemp;
+        return this;
+    }
+
+    /**
+     * @param random random number generator used for moves and acceptance, set a seeded generator (such as an Rng) for
+     *               a repeatable run. Checkpoints require an Rng
+     * @return this annealer
+     */
+    public Annealer random(RandomGenerator random) {
+        this.random = random;
+        return this;
+    }
+
+    /**
+     * @param recorder recorder every iteration is streamed to, or null (the default) to record nothing. The recorder is
+     *                 flushed but not closed at the end of a run
+     * @return this annealer
+     */
+    public Annealer recorder(RunRecorder recorder) {
+        this.recorder = recorder;
+        return this;
+    }
+
+    /**
+     * @param metrics metrics to collect during runs, or null (the default) to collect none
+     * @return this annealer
+     */
+    public Annealer metrics(RunMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Takes a Checkpoint of the run every interval iterations. The snapshot of the current solution is taken in the
+     * loop, but it is written on a background thread; if the previous checkpoint is still being written when the next
+     * is due, the next is skipped.
+     * @param path file checkpoints are written to, each replacing the last, or null (the default) for none
+     * @param interval number of iterations between checkpoints
+     * @return this annealer
+     */
+    public Annealer checkpoint(Path path, int interval) {
+        if (path != null && interval < 1) throw new IllegalArgumentException("Checkpoint interval must be positive");
+        this.checkpointPath = path;
+        this.checkpointInterval = interval;
+        return this;
+    }
+
+    /**
+     * Anneals a copy of a network
+     * @param network starting network, not modified
+     * @return best network found and run statistics
+     */
+    public Result run(TreeMap<String, BNNode> network) {
+        TreeMap<String, BNNode> currentSol = copyNetwork(network);
+        MoveJournal journal = new MoveJournal(currentSol);
+
+        int currentScore = objective.score(journal);
+        objective.accepted();
+
+        return anneal(journal, currentScore, copyNetwork(currentSol), currentScore, currentScore, 0, startingTemp, 0, 0,
+                0);
+    }
+
+    /**
+     * Continues a run from a checkpoint. With the same schedule, move, objective and maximum iterations as the
+     * original run, the result is identical to that of a run that was never interrupted. The schedule must be a new
+     * instance, and its state is restored from the checkpoint; checkpoints written before schedule state was saved
+     * leave it as it is. A stateful objective such as incremental must be created from the checkpoint's current
+     * network. This annealer's random number generator is replaced by the checkpoint's.
+     * @param checkpoint checkpoint to continue from
+     * @return best network found and run statistics, counting the iterations run before the checkpoint
+     */
+    public Result resume(Checkpoint checkpoint) {
+        TreeMap<String, BNNode> currentSol = checkpoint.current();
+        MoveJournal journal = new MoveJournal(currentSol);
+
+        //Score the restored solution so that a stateful objective starts in step with it
+        objective.score(journal);
+        objective.accepted();
+        random = checkpoint.random();
+        if (checkpoint.schedule() != null) schedule.restore(checkpoint.schedule());
+
+        return anneal(journal, checkpoint.currentScore, checkpoint.best(), checkpoint.bestScore,
+                checkpoint.startingScore, checkpoint.iteration, checkpoint.temperature, checkpoint.accepted,
+                checkpoint.restarts, checkpoint.lastImprovement);
+    }
+
+    private Result anneal(MoveJournal journal, int currentScore, TreeMap<String, BNNode> bestSol, int bestScore,
+                          int startingScore, int firstIteration, double tempCurrent, int accepted, int restarts,
+                          int lastImprovement) {
+        TreeMap<String, BNNode> currentSol = journal.network();
+        Termination termination = Termination.MAX_ITERATIONS;
+        ExecutorService checkpointWriter = null;
+        Future<?> pendingCheckpoint = null;
+        CompiledNetwork bestSnapshot = null; //Compiled best solution, kept until a better one is found
+        if (checkpointPath != null) {
+            Checkpoint.snapshot(random); //Fail now rather than at the first checkpoint if the generator is not an Rng
+            checkpointWriter = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        int iteration;
+        for (iteration = firstIteration; iteration < maxIterations; iteration++) {
+            if (bestScore <= targetScore) {
+                termination = Termination.TARGET_SCORE;
+                break;
+            }
+
+            //Decrement temperature, restarting from a new network if the run has stagnated or cooled
+            tempCurrent = schedule.next(iteration, tempCurrent);
+            boolean stagnated = patience > 0 && iteration - lastImprovement >= patience;
+            if (stagnated || tempCurrent < minTemp) {
+                if (restartStrategy == null || restarts >= maxRestarts) {
+                    termination = stagnated ? Termination.STAGNATION : Termination.MIN_TEMPERATURE;
+                    break;
+                }
+                currentSol = restartStrategy.restart(currentSol, bestSol, random);
+                journal = new MoveJournal(currentSol);
+                currentScore = objective.score(journal);
+                objective.accepted();
+                restarts++;
+                lastImprovement = iteration;
+                tempCurrent = Double.isNaN(restartTemp) ? startingTemp : restartTemp;
+                if (currentScore < bestScore) {
+                    bestScore = currentScore;
+                    bestSol = copyNetwork(currentSol);
+                    bestSnapshot = null;
+                }
+            }
+
+            //Generate a candidate in place and score it
+            if (metrics != null) metrics.beginMove(iteration);
+            move.apply(journal, random);
+            int moveSize = journal.count();
+            int edits = journal.edits();
+            if (metrics != null) metrics.endMove(iteration, moveSize, edits);
+            int candScore;
+            double draw = Double.NaN;
+            int bound = Integer.MAX_VALUE;
+            if (objective.bounded()) {
+                draw = random.nextDouble(0, 1);
+                bound = rejectionBound(currentScore, tempCurrent, draw);
+                candScore = objective.score(journal, bound);
+            } else {
+                candScore = objective.score(journal);
+            }
+            if (metrics != null) metrics.endScore(candScore);
+            int delta = candScore - currentScore;
+
+            //Accept if improvement, or if worse but passes acceptance criterion
+            boolean accept = candScore < bound && (delta < 0 || (delta > 0
+                    && (Double.isNaN(draw) ? random.nextDouble(0, 1) : draw) < Math.exp(-delta / tempCurrent)));
+            if (metrics != null) metrics.acceptance(iteration, tempCurrent, delta, accept);
+            if (recorder != null) recorder.record(iteration, tempCurrent, candScore, delta, accept, moveSize,
+                    edits);
+
+            if (accept) {
+                journal.commit();
+                objective.accepted();
+                currentScore = candScore;
+                accepted++;
+
+                if (currentScore < bestScore) {
+                    bestScore = currentScore;
+                    bestSol = copyNetwork(currentSol);
+                    bestSnapshot = null;
+                    lastImprovement = iteration + 1;
+                }
+            } else {
+                journal.rollback();
+                objective.rejected();
+            }
+            schedule.observe(currentScore, delta, accept);
+
+            if (checkpointWriter != null && (iteration + 1) % checkpointInterval == 0
+                    && (pendingCheckpoint == null || pendingCheckpoint.isDone())) {
+                if (bestSnapshot == null) bestSnapshot = CompiledNetwork.compile(bestSol);
+                Checkpoint checkpoint = new Checkpoint(iteration + 1, tempCurrent, accepted, currentScore, bestScore,
+                        startingScore, restarts, lastImprovement, CompiledNetwork.compile(currentSol), bestSnapshot,
+                        schedule.state(), Checkpoint.snapshot(random));
+                pendingCheckpoint = checkpointWriter.submit(() -> checkpoint.write(checkpointPath));
+            }
+        }
+
+        if (recorder != null) recorder.flush();
+        if (checkpointWriter != null) {
+            checkpointWriter.shutdown();
+            try {
+                if (pendingCheckpoint != null) pendingCheckpoint.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Checkpoint could not be written", e.getCause());
+            }
+        }
+
+        if (termination == Termination.MAX_ITERATIONS && bestScore <= targetScore) {
+            termination = Termination.TARGET_SCORE;
+        }
+        return new Result(bestSol, bestScore, currentSol, currentScore, startingScore, iteration, accepted, tempCurrent,
+                restarts, termination);
+    }
+
+    /**
+     * Finds the lowest candidate score that is rejected for a given acceptance random number. A worse candidate is
+     * accepted when draw &lt; exp(-delta / temperature), that is when delta &lt; -temperature * ln(draw), so every
+     * delta above that threshold (and a delta of 0) is rejected.
+     */
+    static int rejectionBound(int currentScore, double temperature, double draw) {
+        double threshold = -temperature * Math.log(draw);
+        if (!(threshold < Integer.MAX_VALUE)) return Integer.MAX_VALUE;
+        return (int) Math.min(Integer.MAX_VALUE, currentScore + (long) Math.floor(threshold) + 1);
+    }
+}
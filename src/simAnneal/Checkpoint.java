@@ -0,0 +1,245 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.BinaryFormat;
+import bnsim.process.CompiledNetwork;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * Snapshot of an annealing run taken between iterations, from which Annealer.resume continues the run exactly as if it
+ * had never stopped. It holds the iteration and temperature reached, the run's scores and counters, the current and
+ * best networks, the state of the cooling schedule and the state of the run's Rng.
+ * <p>
+ * All values are little-endian. The file starts with a fixed size header:
+ * <pre>
+ * int    magic           'S' 'A' 'C' 'P'
+ * int    version         VERSION
+ * int    iteration       next iteration to run
+ * int    accepted        number of candidates accepted so far
+ * int    currentScore    score of the current network
+ * int    bestScore       score of the best network
+ * int    startingScore   score of the run's starting network
+ * int    scheduleValues  number of values of cooling schedule state
+ * double temperature     temperature of the last iteration run
+ * long   bestOffset      offset of the best network
+ * int    restarts        number of restarts made so far
+ * int    lastImprovement iteration the count towards stagnation started from
+ * long   randomSeed      position of the Rng in its stream
+ * long   randomGamma     step of the Rng's stream
+ * </pre>
+ * followed by the schedule state as doubles, the current network and the best network, both in BinaryFormat.
+ * <p>
+ * Versions 1 to 3 held the Java serialized generator in place of randomSeed and randomGamma: the header held its
+ * length where scheduleValues now is, and the generator followed the header, padded to a multiple of 8 bytes. These
+ * files are still read, accepting only a serialized Rng. Version 1 files, written before restarts, end the header at
+ * bestOffset and are read as having made no restarts and last improved at the checkpoint's iteration. Version 1 and 2
+ * files, written before schedule state was saved, end the header at lastImprovement and have no schedule state.
+ * Version 3 files end the header with scheduleValues and a reserved int.
+ */
+public class Checkpoint {
+    public static final int MAGIC = 0x50434153; //"SACP" when read as little-endian bytes
+    public static final int VERSION = 4;
+    private static final int HEADER_BYTES = 72;
+    private static final int V3_HEADER_BYTES = 64;
+    private static final int V2_HEADER_BYTES = 56;
+    private static final int V1_HEADER_BYTES = 48;
+
+    public final int iteration; //Next iteration to run
+    public final double temperature; //Temperature of the last iteration run
+    public final int accepted; //Number of candidates accepted so far
+    public final int currentScore; //Score of the current network
+    public final int bestScore; //Score of the best network
+    public final int startingScore; //Score of the run's starting network
+    public final int restarts; //Number of restarts made so far
+    public final int lastImprovement; //Iteration the count towards stagnation started from
+    private final CompiledNetwork current;
+    private final CompiledNetwork best;
+    private final double[] schedule; //Cooling schedule state, or null if the file predates it
+    private final Rng random; //Copy of the run's random number generator
+
+    Checkpoint(int iteration, double temperature, int accepted, int currentScore, int bestScore, int startingScore,
+               int restarts, int lastImprovement, CompiledNetwork current, CompiledNetwork best, double[] schedule,
+               Rng random) {
+        this.iteration = iteration;
+        this.temperature = temperature;
+        this.accepted = accepted;
+        this.currentScore = currentScore;
+        this.bestScore = bestScore;
+        this.startingScore = startingScore;
+        this.restarts = restarts;
+        this.lastImprovement = lastImprovement;
+        this.current = current;
+        this.best = best;
+        this.schedule = schedule;
+        this.random = random;
+    }
+
+    /**
+     * @return cooling schedule state saved by CoolingSchedule.state, or null if the checkpoint was written by a
+     *         version that did not save it
+     */
+    public double[] schedule() {
+        return schedule == null ? null : schedule.clone();
+    }
+
+    /**
+     * @return copy of the current network, with its node states
+     */
+    public TreeMap<String, BNNode> current() {
+        return current.toNetwork();
+    }
+
+    /**
+     * @return copy of the best network found so far
+     */
+    public TreeMap<String, BNNode> best() {
+        return best.toNetwork();
+    }
+
+    /**
+     * @return the run's random number generator, in the state it was in when the checkpoint was taken
+     */
+    public RandomGenerator random() {
+        return new Rng(random.seed(), random.gamma());
+    }
+
+    /**
+     * Copies a run's random number generator for a checkpoint, which can only hold an Rng
+     */
+    static Rng snapshot(RandomGenerator random) {
+        if (!(random instanceof Rng)) {
+            throw new IllegalStateException(random.getClass().getName() + " cannot be checkpointed, use an Rng");
+        }
+        Rng rng = (Rng) random;
+        return new Rng(rng.seed(), rng.gamma());
+    }
+
+    /**
+     * Reads a generator serialized by a version 1 to 3 checkpoint, refusing any class but Rng
+     */
+    private static Rng deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("maxdepth=1;simAnneal.Rng;!*"));
+            return (Rng) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Checkpoint random number generator could not be read", e);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and then moves it over the target, so a crash while writing leaves
+     * the previous checkpoint intact
+     * @param path file to write
+     */
+    public void write(Path path) {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer state = ByteBuffer.allocate(schedule.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (double value : schedule) state.putDouble(value);
+                state.flip();
+                channel.position(HEADER_BYTES);
+                while (state.hasRemaining()) channel.write(state);
+                BinaryFormat.write(current, channel);
+                long bestOffset = channel.position();
+                BinaryFormat.write(best, channel);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(iteration).putInt(accepted).putInt(currentScore)
+                        .putInt(bestScore).putInt(startingScore).putInt(schedule.length).putDouble(temperature)
+                        .putLong(bestOffset).putInt(restarts).putInt(lastImprovement).putLong(random.seed())
+                        .putLong(random.gamma());
+                header.flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+                channel.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param path checkpoint file
+     * @return the checkpoint
+     */
+    public static Checkpoint read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            if (header.remaining() < V1_HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new RuntimeException(path + " is not a checkpoint file");
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new RuntimeException("Unsupported checkpoint version " + version);
+            }
+            int headerBytes = version == 1 ? V1_HEADER_BYTES : version == 2 ? V2_HEADER_BYTES
+                    : version == 3 ? V3_HEADER_BYTES : HEADER_BYTES;
+
+            int iteration = header.getInt();
+            int accepted = header.getInt();
+            int currentScore = header.getInt();
+            int bestScore = header.getInt();
+            int startingScore = header.getInt();
+            int length = header.getInt(); //Schedule values, or serialized generator bytes before version 4
+            double temperature = header.getDouble();
+            long bestOffset = header.getLong();
+            int restarts = version == 1 ? 0 : header.getInt();
+            int lastImprovement = version == 1 ? iteration : header.getInt();
+
+            Rng random;
+            double[] schedule;
+            long currentOffset = headerBytes;
+            if (version < 4) {
+                schedule = version < 3 ? null : new double[header.getInt()];
+                byte[] serialized = new byte[length];
+                channel.position(headerBytes);
+                readFully(channel, ByteBuffer.wrap(serialized));
+                random = deserialize(serialized);
+                currentOffset += (length + 7) & ~7L;
+            } else {
+                schedule = new double[length];
+                long seed = header.getLong();
+                long gamma = header.getLong();
+                if ((gamma & 1) == 0) throw new RuntimeException(path + " has an invalid random number generator");
+                random = new Rng(seed, gamma);
+            }
+
+            if (schedule != null) {
+                ByteBuffer state = ByteBuffer.allocate(schedule.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                channel.position(currentOffset);
+                readFully(channel, state);
+                state.flip();
+                for (int i = 0; i < schedule.length; i++) schedule[i] = state.getDouble();
+                currentOffset += state.capacity();
+            }
+            CompiledNetwork current = BinaryFormat.read(channel, currentOffset);
+            CompiledNetwork best = BinaryFormat.read(channel, bestOffset);
+
+            return new Checkpoint(iteration, temperature, accepted, currentScore, bestScore, startingScore, restarts,
+                    lastImprovement, current, best, schedule, random);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) break;
+        }
+    }
+}
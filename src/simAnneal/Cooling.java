@@ -15,20 +15,44 @@ public class Cooling {
      * @param currentTemp temperature set by the previous iteration
      * @return temperature for the current iteration
      */
-    public static Double linearCool(Integer startingTemp, Integer endTemp, Integer iterationLimit, Double currentTemp){
+    public static double linearCool(int startingTemp, int endTemp, int iterationLimit, double currentTemp){
+        return linearCool((double) startingTemp, endTemp, iterationLimit, currentTemp);
+    }
+
+    /**
+     * A linear cooling schedule as linearCool(int, int, int, double), for temperatures that are not whole numbers
+     * such as calibrated ones
+     * @param startingTemp initial temperature
+     * @param endTemp desired final temperature
+     * @param iterationLimit number of iterations
+     * @param currentTemp temperature set by the previous iteration
+     * @return temperature for the current iteration
+     */
+    public static double linearCool(double startingTemp, double endTemp, int iterationLimit, double currentTemp){
         return (currentTemp - ((startingTemp - endTemp) / (iterationLimit - 1)));
     }
 
     /**
      * Reduces temperature geometrically according to a supplied cooling factor. Cooling factor should be a value
      * between 0.8 and 0.99 (see Peprah et al.).
-     * @param iteration current iteration
+     * @param iteration current iteration, not needed as the previous temperature already holds the cooling so far
+     * @param coolingFactor constant governing the rate of change
+     * @param currentTemp temperature set by the previous iteration
+     * @return temperature for the current iteration
+     */
+    public static double expCool(int iteration, double coolingFactor, double currentTemp){
+        return geometricCool(coolingFactor, currentTemp);
+    }
+
+    /**
+     * Reduces temperature geometrically, multiplying the previous temperature by the cooling factor so that the
+     * temperature on iteration i is startingTemp * coolingFactor^(i + 1)
      * @param coolingFactor constant governing the rate of change
      * @param currentTemp temperature set by the previous iteration
      * @return temperature for the current iteration
      */
-    public static Double expCool(Integer iteration, Double coolingFactor, Double currentTemp){
-        return Math.pow(coolingFactor, iteration) * currentTemp;
+    public static double geometricCool(double coolingFactor, double currentTemp){
+        return coolingFactor * currentTemp;
     }
 
     /**
@@ -38,7 +62,20 @@ public class Cooling {
      * @param coolingFactor constant governing the rate of change
      * @return temperature for the current iteration
      */
-    public static Double lundyCool(Double currentTemp, Double coolingFactor){
+    public static double lundyCool(double currentTemp, double coolingFactor){
         return (currentTemp)/(1 + (coolingFactor * currentTemp));
     }
+
+    /**
+     * Target acceptance ratio of the modified Lam schedule (Swartz 1993) at a given fraction of the run: falling
+     * quickly from 1 to 0.44 over the first 15% of the run, held at 0.44 until 65%, then falling exponentially to
+     * about 0.001 at the end
+     * @param progress fraction of the run completed, from 0 to 1
+     * @return target ratio of accepted candidates
+     */
+    public static double lamTarget(double progress){
+        if (progress < 0.15) return 0.44 + 0.56 * Math.pow(560, -progress / 0.15);
+        if (progress < 0.65) return 0.44;
+        return 0.44 * Math.pow(440, -(progress - 0.65) / 0.35);
+    }
 }
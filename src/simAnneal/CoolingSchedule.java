@@ -0,0 +1,99 @@
+package simAnneal;
+
+/**
+ * A cooling schedule used by the annealing loop to set the temperature for each iteration. The static factories wrap
+ * the schedules in Cooling, and the adaptive schedules of AdaptiveCooling, which adjust the temperature from the
+ * outcome of each iteration passed to observe. Adaptive schedules keep state, so each run needs its own instance.
+ */
+@FunctionalInterface
+public interface CoolingSchedule {
+
+    /**
+     * @param iteration current iteration, starting from 0
+     * @param currentTemp temperature set by the previous iteration (the starting temperature on iteration 0)
+     * @return temperature for the current iteration
+     */
+    double next(int iteration, double currentTemp);
+
+    /**
+     * Called by the annealing loop once it has decided on each candidate
+     * @param score score of the current solution after the decision
+     * @param delta candidate score minus the score of the solution it was generated from
+     * @param accepted whether the candidate was accepted
+     */
+    default void observe(int score, int delta, boolean accepted) {}
+
+    /**
+     * @return values of the state the schedule carries between iterations, which a Checkpoint saves so a resumed run
+     *         continues exactly. Empty for schedules that keep no state
+     */
+    default double[] state() {
+        return new double[0];
+    }
+
+    /**
+     * Restores state saved by state(), when a run is resumed from a checkpoint
+     * @param state values returned by state() on a schedule of the same kind and settings
+     */
+    default void restore(double[] state) {
+        checkState(state, 0);
+    }
+
+    /**
+     * Checks that saved schedule state has the number of values a schedule expects
+     */
+    static void checkState(double[] state, int length) {
+        if (state.length != length) {
+            throw new IllegalArgumentException("Schedule state has " + state.length + " values, expected " + length);
+        }
+    }
+
+    /**
+     * @see Cooling#linearCool(double, double, int, double)
+     */
+    static CoolingSchedule linear(double startingTemp, double endTemp, int iterationLimit) {
+        return (iteration, currentTemp) -> Cooling.linearCool(startingTemp, endTemp, iterationLimit, currentTemp);
+    }
+
+    /**
+     * @see Cooling#geometricCool(double, double)
+     */
+    static CoolingSchedule exponential(double coolingFactor) {
+        return (iteration, currentTemp) -> Cooling.geometricCool(coolingFactor, currentTemp);
+    }
+
+    /**
+     * @see Cooling#lundyCool(double, double)
+     */
+    static CoolingSchedule lundy(double coolingFactor) {
+        return (iteration, currentTemp) -> Cooling.lundyCool(currentTemp, coolingFactor);
+    }
+
+    /**
+     * @see AdaptiveCooling.TargetAcceptance
+     */
+    static CoolingSchedule targetAcceptance(double target, int window, double factor) {
+        return new AdaptiveCooling.TargetAcceptance(target, window, factor);
+    }
+
+    /**
+     * @see AdaptiveCooling.Lam
+     */
+    static CoolingSchedule lam(int iterations, double factor) {
+        return new AdaptiveCooling.Lam(iterations, factor);
+    }
+
+    /**
+     * @see AdaptiveCooling.Variance
+     */
+    static CoolingSchedule variance(double lambda, int window) {
+        return new AdaptiveCooling.Variance(lambda, window);
+    }
+
+    /**
+     * @see AdaptiveCooling.Reheating
+     */
+    static CoolingSchedule reheating(CoolingSchedule schedule, int patience, double factor) {
+        return new AdaptiveCooling.Reheating(schedule, patience, factor);
+    }
+}
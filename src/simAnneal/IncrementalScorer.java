@@ -0,0 +1,353 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.nodes.TruthTable;
+import bnsim.process.CompiledNetwork;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Scores candidate networks incrementally against a desired trace, giving the same score as Objective.scoreNetwork.
+ * The trajectory of the current solution is cached, and a candidate that differs from it by a few flipped truth table
+ * rows is scored by re-evaluating only the nodes that can differ at each time step: the changed nodes themselves and
+ * the out-neighbours of nodes whose state differed at the previous step.
+ * <p>
+ * Candidates built in a MoveJournal can also rewire, add or remove inputs. An edited node is replaced in the compiled
+ * network and re-evaluated at every step, and differences are followed downstream through the journal's index of
+ * out-neighbours, which is kept up to date through every edit, so the candidate's wiring is always the one followed.
+ * <p>
+ * Usage follows the accept/reject cycle of the annealing loop: evaluate a candidate, then call either accept (the
+ * candidate becomes the current solution) or reject (the flips are undone) before evaluating the next one.
+ */
+public class IncrementalScorer {
+    private final CompiledNetwork network; //Current solution, with candidate flips applied during an evaluation
+    private final int size;
+    private final int steps; //Number of iterations in the desired trace
+    private final long[][] trajectory; //Cached states of the current solution, trajectory[0] being the initial state
+    private final long[][] desired; //Desired states, desired[t] compared against trajectory[t]
+    private final long[][] compared; //Mask of the nodes compared at each step
+    private int[] outStart; //Offset of each node's out-neighbours in outs, length size + 1
+    private int[] outs; //Flat array of out-neighbour node indices
+    private boolean rewired; //True when a wiring edit has been accepted since outs was built
+    private int score;
+
+    //Reusable working state for an evaluation
+    private int[] diffMark; //diffMark[node] == step stamp when the node differs from the cache at the current step
+    private int[] previousMark; //As diffMark, for the previous step. The two arrays are swapped after each step
+    private final int[] dirtyMark; //dirtyMark[node] == step stamp when the node is already queued at that step
+    private final int[] dirty; //Nodes to re-evaluate at the current step
+    private final int[] changed; //Distinct nodes with flipped truth table rows
+    private int changedCount;
+    private int[] diffNodes = new int[64]; //Nodes that differ from the cache, grouped by step
+    private final int[] diffStart; //Offset of each step's differing nodes in diffNodes, length steps + 2
+    private int[] flipNodes = new int[16]; //Pending flips, kept so they can be undone
+    private int[] flipRows = new int[16];
+    private int flipCount;
+    private final int[] editMark; //editMark[node] == stamp of the evaluation when the node has a wiring edit
+    private int[] editNodes = new int[4]; //Distinct nodes with wiring edits, kept so they can be undone
+    private int[][] editInputs = new int[4][]; //Inputs of each edited node before the edit
+    private TruthTable[] editTables = new TruthTable[4]; //Truth table of each edited node before the edit
+    private int editCount;
+    private int candidateScore;
+    private boolean pending;
+    private int stamp;
+
+    /**
+     * @param network current solution, its current node states are used as the initial state
+     * @param desiredTrace String representation of the desired trace (comma separated, e.g.: 000,001,000)
+     */
+    public IncrementalScorer(TreeMap<String, BNNode> network, String desiredTrace) {
+        this(CompiledNetwork.compile(network), desiredTrace);
+    }
+
+    /**
+     * @param network current solution, its current state is used as the initial state. The scorer takes ownership of
+     *                the compiled network and modifies its truth tables
+     * @param desiredTrace String representation of the desired trace (comma separated, e.g.: 000,001,000)
+     */
+    public IncrementalScorer(CompiledNetwork network, String desiredTrace) {
+        this.network = network;
+        this.size = network.size();
+
+        String[] split = desiredTrace.split(",");
+        this.steps = split.length;
+        int words = (size + 63) >>> 6;
+        this.trajectory = new long[steps + 1][words];
+        this.desired = new long[steps + 1][words];
+        this.compared = new long[steps + 1][words];
+        for (int t = 1; t <= steps; t++) {
+            String step = split[t - 1];
+            int width = Math.min(step.length(), size);
+            for (int node = 0; node < width; node++) {
+                compared[t][node >>> 6] |= 1L << node;
+                if (step.charAt(node) == '1') desired[t][node >>> 6] |= 1L << node;
+            }
+        }
+
+        indexOutputs();
+        this.diffMark = new int[size];
+        this.previousMark = new int[size];
+        this.dirtyMark = new int[size];
+        this.editMark = new int[size];
+        this.dirty = new int[size];
+        this.changed = new int[size];
+        this.diffStart = new int[steps + 2];
+        Arrays.fill(diffMark, -1);
+        Arrays.fill(previousMark, -1);
+        Arrays.fill(dirtyMark, -1);
+        Arrays.fill(editMark, -1);
+
+        System.arraycopy(network.state(), 0, trajectory[0], 0, words);
+        reset();
+    }
+
+    /**
+     * Reverses the neighbour inputs to get each node's out-neighbours
+     */
+    private void indexOutputs() {
+        outStart = new int[size + 1];
+        for (int node = 0; node < size; node++) {
+            for (int i = 0; i < network.inputCount(node); i++) outStart[network.input(node, i) + 1]++;
+        }
+        for (int node = 0; node < size; node++) outStart[node + 1] += outStart[node];
+        outs = new int[outStart[size]];
+        int[] fill = Arrays.copyOf(outStart, size);
+        for (int node = 0; node < size; node++) {
+            for (int i = 0; i < network.inputCount(node); i++) outs[fill[network.input(node, i)]++] = node;
+        }
+        rewired = false;
+    }
+
+    /**
+     * Recomputes the cached trajectory and score of the current solution from scratch
+     */
+    public void reset() {
+        for (int t = 1; t <= steps; t++) network.step(trajectory[t - 1], trajectory[t]);
+
+        score = 0;
+        for (int t = 1; t <= steps; t++) {
+            for (int w = 0; w < trajectory[t].length; w++) {
+                score += Long.bitCount((trajectory[t][w] ^ desired[t][w]) & compared[t][w]);
+            }
+        }
+    }
+
+    /**
+     * @return score of the current solution
+     */
+    public int score() {
+        return score;
+    }
+
+    /**
+     * @return the compiled current solution. Its truth tables include the flips of a pending evaluation
+     */
+    public CompiledNetwork network() {
+        return network;
+    }
+
+    /**
+     * Scores a candidate that differs from the current solution by a set of flipped truth table rows. The flips are
+     * applied to the current solution and remain pending until accept or reject is called.
+     * @param nodes node index of each flip
+     * @param rows truth table row of each flip
+     * @param count number of flips
+     * @return score of the candidate
+     */
+    public int evaluate(int[] nodes, int[] rows, int count) {
+        if (pending) throw new IllegalStateException("Previous candidate has not been accepted or rejected");
+        if (rewired) indexOutputs();
+        int changedStamp = begin();
+        applyFlips(nodes, rows, count, changedStamp);
+        return propagate(null);
+    }
+
+    /**
+     * Scores the candidate held in a journal, whose network must be the one this scorer was built from with the
+     * journal's moves applied. Flips and wiring edits are applied to the current solution and remain pending until
+     * accept or reject is called.
+     * @param move journal holding the candidate's flips and wiring edits
+     * @return score of the candidate
+     */
+    public int evaluate(MoveJournal move) {
+        if (pending) throw new IllegalStateException("Previous candidate has not been accepted or rejected");
+        int changedStamp = begin();
+
+        //An edited node takes its new inputs and table from the journal's network, which include any flips made to it
+        int[] edited = move.editNodes();
+        for (int i = 0; i < move.edits(); i++) {
+            int node = edited[i];
+            if (editMark[node] == changedStamp) continue;
+            if (editCount == editNodes.length) {
+                editNodes = Arrays.copyOf(editNodes, editCount << 1);
+                editInputs = Arrays.copyOf(editInputs, editCount << 1);
+                editTables = Arrays.copyOf(editTables, editCount << 1);
+            }
+            int[] inputs = new int[network.inputCount(node)];
+            for (int j = 0; j < inputs.length; j++) inputs[j] = network.input(node, j);
+            editNodes[editCount] = node;
+            editInputs[editCount] = inputs;
+            editTables[editCount++] = network.truthTable(node);
+            network.setNode(node, move.inputs(node), move.node(node).truths);
+
+            editMark[node] = changedStamp;
+            dirtyMark[node] = changedStamp;
+            changed[changedCount++] = node;
+        }
+
+        applyFlips(move.nodes(), move.rows(), move.count(), changedStamp);
+        return propagate(move);
+    }
+
+    /**
+     * Marks an evaluation as pending and gives it a fresh stamp
+     * @return stamp marking the nodes changed by the candidate
+     */
+    private int begin() {
+        pending = true;
+
+        //Stamps only need to be unique within an evaluation, so restart them well before they could overflow
+        if (stamp > Integer.MAX_VALUE - steps - 2) {
+            Arrays.fill(diffMark, -1);
+            Arrays.fill(previousMark, -1);
+            Arrays.fill(dirtyMark, -1);
+            Arrays.fill(editMark, -1);
+            stamp = 0;
+        }
+        changedCount = 0;
+        editCount = 0;
+        return ++stamp;
+    }
+
+    /**
+     * Applies the flips to nodes without a wiring edit, keeping them for reject, and collects the distinct changed
+     * nodes
+     */
+    private void applyFlips(int[] nodes, int[] rows, int count, int changedStamp) {
+        if (flipNodes.length < count) {
+            flipNodes = new int[count];
+            flipRows = new int[count];
+        }
+        flipCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (editMark[nodes[i]] == changedStamp) continue;
+            flipNodes[flipCount] = nodes[i];
+            flipRows[flipCount++] = rows[i];
+            network.flipTruth(nodes[i], rows[i]);
+            if (dirtyMark[nodes[i]] != changedStamp) {
+                dirtyMark[nodes[i]] = changedStamp;
+                changed[changedCount++] = nodes[i];
+            }
+        }
+    }
+
+    /**
+     * Steps forward through the trace, re-evaluating only nodes that can differ from the cached trajectory
+     * @param move journal whose out-neighbours are followed, or null to follow outs
+     * @return score of the candidate
+     */
+    private int propagate(MoveJournal move) {
+        candidateScore = score;
+        int diffCount = 0;
+        int previousStamp = 0; //No node is ever marked with stamp 0, so nothing differs at step 0
+        diffStart[1] = 0;
+        for (int t = 1; t <= steps; t++) {
+            int stepStamp = ++stamp;
+            int dirtyCount = 0;
+            for (int i = 0; i < changedCount; i++) {
+                dirtyMark[changed[i]] = stepStamp;
+                dirty[dirtyCount++] = changed[i];
+            }
+            if (t > 1) {
+                for (int d = diffStart[t - 1]; d < diffStart[t]; d++) {
+                    int source = diffNodes[d];
+                    int[] targets = move == null ? outs : move.outputs(source);
+                    int from = move == null ? outStart[source] : 0;
+                    int to = move == null ? outStart[source + 1] : move.outputCount(source);
+                    for (int o = from; o < to; o++) {
+                        int target = targets[o];
+                        if (dirtyMark[target] != stepStamp) {
+                            dirtyMark[target] = stepStamp;
+                            dirty[dirtyCount++] = target;
+                        }
+                    }
+                }
+            }
+
+            long[] previous = trajectory[t - 1];
+            long[] cached = trajectory[t];
+            for (int i = 0; i < dirtyCount; i++) {
+                int node = dirty[i];
+                boolean value = evaluate(node, previous, previousStamp);
+                boolean cachedValue = (cached[node >>> 6] & (1L << node)) != 0;
+                if (value == cachedValue) continue;
+
+                if (diffCount == diffNodes.length) diffNodes = Arrays.copyOf(diffNodes, diffCount << 1);
+                diffNodes[diffCount++] = node;
+                diffMark[node] = stepStamp;
+
+                if ((compared[t][node >>> 6] & (1L << node)) != 0) {
+                    boolean desiredValue = (desired[t][node >>> 6] & (1L << node)) != 0;
+                    candidateScore += cachedValue == desiredValue ? 1 : -1;
+                }
+            }
+
+            diffStart[t + 1] = diffCount;
+            previousStamp = stepStamp;
+            int[] swap = previousMark;
+            previousMark = diffMark;
+            diffMark = swap;
+        }
+
+        return candidateScore;
+    }
+
+    /**
+     * Evaluates a node on the candidate's state at the previous step, which is the cached state with the nodes marked
+     * as differing at that step flipped
+     */
+    private boolean evaluate(int node, long[] previous, int previousStamp) {
+        int inputs = network.inputCount(node);
+        int row = 0;
+        for (int i = 0; i < inputs; i++) {
+            int input = network.input(node, i);
+            int bit = (int) ((previous[input >>> 6] >>> input) & 1L);
+            if (previousMark[input] == previousStamp) bit ^= 1;
+            row = (row << 1) | bit;
+        }
+        return network.truth(node, row);
+    }
+
+    /**
+     * Makes the last evaluated candidate the current solution, updating the cached trajectory
+     */
+    public void accept() {
+        if (!pending) throw new IllegalStateException("No candidate to accept");
+        pending = false;
+
+        for (int t = 1; t <= steps; t++) {
+            for (int d = diffStart[t]; d < diffStart[t + 1]; d++) {
+                int node = diffNodes[d];
+                trajectory[t][node >>> 6] ^= 1L << node;
+            }
+        }
+        score = candidateScore;
+        if (editCount > 0) rewired = true;
+        editCount = 0;
+        Arrays.fill(editTables, null);
+    }
+
+    /**
+     * Discards the last evaluated candidate, undoing its flips and wiring edits
+     */
+    public void reject() {
+        if (!pending) throw new IllegalStateException("No candidate to reject");
+        pending = false;
+
+        for (int i = flipCount - 1; i >= 0; i--) network.flipTruth(flipNodes[i], flipRows[i]);
+        for (int i = 0; i < editCount; i++) network.setNode(editNodes[i], editInputs[i], editTables[i]);
+        editCount = 0;
+        Arrays.fill(editTables, null);
+    }
+}
@@ -0,0 +1,96 @@
+package simAnneal;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Generates a candidate by applying a move in place to the current solution through a MoveJournal, so the annealing
+ * loop can commit or roll it back. The static factories wrap the in place methods of NeighbourGen.
+ */
+@FunctionalInterface
+public interface MoveGenerator {
+
+    /**
+     * Applies a move to the journal's network, recording every change in the journal
+     * @param move journal of the current solution
+     * @param random random number generator of the annealing run
+     */
+    void apply(MoveJournal move, RandomGenerator random);
+
+    /**
+     * @see NeighbourGen#gen1(MoveJournal, int, int, RandomGenerator)
+     */
+    static MoveGenerator nodes(int nodes, int truthRows) {
+        return (move, random) -> NeighbourGen.gen1(move, nodes, truthRows, random);
+    }
+
+    /**
+     * @see NeighbourGen#genRandFixed(MoveJournal, int, int, RandomGenerator)
+     */
+    static MoveGenerator fixed(int rows, int truthsMax) {
+        return (move, random) -> NeighbourGen.genRandFixed(move, rows, truthsMax, random);
+    }
+
+    /**
+     * @see NeighbourGen#genRand(MoveJournal, int, int, RandomGenerator)
+     */
+    static MoveGenerator random(int upper, int truthsMax) {
+        return (move, random) -> NeighbourGen.genRand(move, upper, truthsMax, random);
+    }
+
+    /**
+     * @see NeighbourGen#genRandGauss(MoveJournal, int, int, double, int, RandomGenerator)
+     */
+    static MoveGenerator gaussian(int totalTruths, int median, double stddev, int truthsMax) {
+        return (move, random) -> NeighbourGen.genRandGauss(move, totalTruths, median, stddev, truthsMax, random);
+    }
+
+    /**
+     * @see NeighbourGen#rewire(MoveJournal, int, RandomGenerator)
+     */
+    static MoveGenerator rewire(int edges) {
+        return (move, random) -> NeighbourGen.rewire(move, edges, random);
+    }
+
+    /**
+     * @see NeighbourGen#addInput(MoveJournal, int, RandomGenerator)
+     */
+    static MoveGenerator addInput(int maxInputs) {
+        return (move, random) -> NeighbourGen.addInput(move, maxInputs, random);
+    }
+
+    /**
+     * @see NeighbourGen#removeInput(MoveJournal, int, RandomGenerator)
+     */
+    static MoveGenerator removeInput(int minInputs) {
+        return (move, random) -> NeighbourGen.removeInput(move, minInputs, random);
+    }
+
+    /**
+     * Applies one of several moves, chosen at random in proportion to its weight, for example to mix truth table
+     * flips with rewiring
+     * @param weights non-negative weight of each move, not all zero
+     * @param moves moves to choose from
+     * @return move generator
+     */
+    static MoveGenerator oneOf(double[] weights, MoveGenerator... moves) {
+        if (weights.length != moves.length) {
+            throw new IllegalArgumentException(weights.length + " weights given for " + moves.length + " moves");
+        }
+        double[] cumulative = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (!(weights[i] >= 0)) throw new IllegalArgumentException("Move weights must not be negative");
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        if (total <= 0) throw new IllegalArgumentException("Move weights must not all be zero");
+
+        double sum = total;
+        return (move, random) -> {
+            double draw = random.nextDouble(sum);
+            int i = 0;
+            while (i < cumulative.length - 1 && draw >= cumulative[i]) i++;
+            moves[i].apply(move, random);
+        };
+    }
+}
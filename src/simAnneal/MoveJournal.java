@@ -0,0 +1,417 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.nodes.TruthTable;
+import bnsim.process.CompiledNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Undo journal for moves applied in place to a network. Each truth table flip is made directly on the network's nodes
+ * and recorded, so a rejected candidate can be rolled back and an accepted one committed without copying the network.
+ * The journal's arrays are reused from move to move and only grow when a move is larger than any before it.
+ * <p>
+ * Moves can also change the wiring, rewiring, adding or removing a node's inputs. These replace the node's neighbour
+ * set and truth table with new ones and record the old ones, so rolling them back only restores references. The
+ * journal keeps an index of each node's out-neighbours (the nodes it is an input of) up to date through every edit
+ * and rollback, so code that follows the network downstream does not need to rebuild it.
+ * <p>
+ * Nodes are identified by their index in the natural ordering of node names, the same indexing used by
+ * CompiledNetwork. The journal also keeps the network's ZobristHash up to date through every flip, edit and rollback,
+ * and on request keeps a CompiledNetwork view of the network in step with flips, so objectives can simulate candidates
+ * without compiling the network again. A wiring edit or its rollback rewrites only the edited node in the view.
+ */
+public class MoveJournal {
+    private final TreeMap<String, BNNode> network;
+    private final BNNode[] nodes; //Network nodes, in natural order of node names
+    private final Map<String, Integer> index = new HashMap<>(); //Node index of each node name
+    private final int[][] outs; //Out-neighbours of each node, in no particular order
+    private final int[] outCount; //Number of out-neighbours of each node
+    private int[] flipNodes = new int[16]; //Node index of each flip in the current move
+    private int[] flipRows = new int[16]; //Truth table row of each flip in the current move
+    private int count; //Number of flips in the current move
+    private long hash; //Zobrist hash of the network's truth tables and wiring
+    private CompiledNetwork compiled; //Compiled view of the network kept in step with flips, or null until needed
+
+    //Wiring edits in the current move, each undone before the flips recorded ahead of it
+    private int[] editNode = new int[4]; //Node index of each edit
+    private int[] editAt = new int[4]; //Number of flips recorded before each edit
+    private int[] editRemoved = new int[4]; //Input node removed by each edit, or -1
+    private int[] editAdded = new int[4]; //Input node added by each edit, or -1
+    private long[] editHash = new long[4]; //Hash before each edit
+    private final List<LinkedHashSet<String>> editNeighbours = new ArrayList<>(); //Neighbour set before each edit
+    private TruthTable[] editTruths = new TruthTable[4]; //Truth table before each edit
+    private int editCount; //Number of edits in the current move
+
+    /**
+     * @param network network that moves will be applied to
+     */
+    public MoveJournal(TreeMap<String, BNNode> network) {
+        this.network = network;
+        this.nodes = network.values().toArray(new BNNode[0]);
+        for (BNNode node : nodes) index.put(node.name, index.size());
+        this.hash = ZobristHash.hash(network);
+
+        this.outs = new int[nodes.length][];
+        this.outCount = new int[nodes.length];
+        Arrays.fill(outs, new int[0]);
+        for (int node = 0; node < nodes.length; node++) {
+            for (String neighbour : nodes[node].neighbours) link(index(neighbour), node);
+        }
+    }
+
+    /**
+     * @return the network moves are applied to
+     */
+    public TreeMap<String, BNNode> network() {
+        return network;
+    }
+
+    /**
+     * Gives a compiled view of the network, including the current move, which is kept in step with every flip, wiring
+     * edit and rollback. Its truth tables and wiring must only be changed through the journal, but its node states are
+     * free for the caller to use, for example to simulate the network.
+     * @return compiled view of the network, the same instance for the life of the journal
+     */
+    public CompiledNetwork compiled() {
+        if (compiled == null) compiled = CompiledNetwork.compile(network);
+        return compiled;
+    }
+
+    /**
+     * @return number of nodes in the network
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @param node node index
+     * @return the node at that index
+     */
+    public BNNode node(int node) {
+        return nodes[node];
+    }
+
+    /**
+     * @param name node name
+     * @return index of the node
+     */
+    public int index(String name) {
+        Integer node = index.get(name);
+        if (node == null) throw new IllegalArgumentException("Unknown node " + name);
+        return node;
+    }
+
+    /**
+     * @param node node index
+     * @return number of inputs of the node
+     */
+    public int inputCount(int node) {
+        return nodes[node].neighbours.size();
+    }
+
+    /**
+     * @param node node index
+     * @param source node index of a possible input
+     * @return true if source is an input of node
+     */
+    public boolean hasInput(int node, int source) {
+        return nodes[node].neighbours.contains(nodes[source].name);
+    }
+
+    /**
+     * @param node node index
+     * @return number of nodes the node is an input of
+     */
+    public int outputCount(int node) {
+        return outCount[node];
+    }
+
+    /**
+     * @param node node index
+     * @return indices of the nodes the node is an input of, in no particular order. Only the first outputCount(node)
+     *         entries are valid, and the array may be replaced by the next edit
+     */
+    public int[] outputs(int node) {
+        return outs[node];
+    }
+
+    /**
+     * Flips a truth table row of a node and records the flip
+     * @param node node index
+     * @param row truth table row to flip
+     */
+    public void flip(int node, int row) {
+        if (count == flipNodes.length) {
+            flipNodes = Arrays.copyOf(flipNodes, count << 1);
+            flipRows = Arrays.copyOf(flipRows, count << 1);
+        }
+
+        nodes[node].truths.flip(row);
+        if (compiled != null) compiled.flipTruth(node, row);
+        hash ^= ZobristHash.key(node, row);
+        flipNodes[count] = node;
+        flipRows[count] = row;
+        count++;
+    }
+
+    /**
+     * Replaces one input of a node with another node, keeping its position in the neighbour set and so its bit in
+     * the truth table row. The truth table is unchanged, so the node applies the same function to its new inputs.
+     * @param node node index
+     * @param position position of the input to replace in the node's neighbour set
+     * @param source node index of the new input, which must not already be an input of the node
+     */
+    public void rewire(int node, int position, int source) {
+        BNNode target = nodes[node];
+        checkPosition(target, position);
+        if (hasInput(node, source)) {
+            throw new IllegalArgumentException(nodes[source].name + " is already an input of " + target.name);
+        }
+
+        LinkedHashSet<String> neighbours = new LinkedHashSet<>();
+        int removed = -1;
+        for (String neighbour : target.neighbours) {
+            if (neighbours.size() == position) {
+                removed = index(neighbour);
+                neighbours.add(nodes[source].name);
+            } else {
+                neighbours.add(neighbour);
+            }
+        }
+
+        edit(node, removed, source, neighbours, target.truths);
+    }
+
+    /**
+     * Adds an input to a node as the last entry of its neighbour set, which becomes the least significant bit of the
+     * truth table row. The truth table doubles in size, each row r becoming rows 2r and 2r + 1 with the same output,
+     * so the node computes the same function and ignores the new input until its table is changed.
+     * @param node node index
+     * @param source node index of the new input, which must not already be an input of the node
+     */
+    public void addInput(int node, int source) {
+        BNNode target = nodes[node];
+        if (hasInput(node, source)) {
+            throw new IllegalArgumentException(nodes[source].name + " is already an input of " + target.name);
+        }
+
+        int rows = 1 << target.neighbours.size();
+        TruthTable truths = new TruthTable(rows << 1);
+        for (int row = target.truths.nextSetBit(0); row >= 0 && row < rows; row = target.truths.nextSetBit(row + 1)) {
+            truths.set(row << 1);
+            truths.set((row << 1) | 1);
+        }
+
+        LinkedHashSet<String> neighbours = new LinkedHashSet<>(target.neighbours);
+        neighbours.add(nodes[source].name);
+        edit(node, -1, source, neighbours, truths);
+    }
+
+    /**
+     * Removes an input from a node. The truth table halves in size, keeping the rows in which the removed input had
+     * the given value, so the node computes the function it did with that input held constant.
+     * @param node node index
+     * @param position position of the input to remove in the node's neighbour set
+     * @param value value of the removed input whose rows are kept
+     */
+    public void removeInput(int node, int position, boolean value) {
+        BNNode target = nodes[node];
+        checkPosition(target, position);
+
+        int inputs = target.neighbours.size();
+        int bit = inputs - 1 - position; //Bit of the truth table row holding the removed input
+        long low = (1L << bit) - 1;
+        int rows = 1 << inputs;
+        TruthTable truths = new TruthTable(rows >>> 1);
+        for (int row = target.truths.nextSetBit(0); row >= 0 && row < rows; row = target.truths.nextSetBit(row + 1)) {
+            if (((row >>> bit) & 1) == (value ? 1 : 0)) truths.set((int) (((row >>> (bit + 1)) << bit) | (row & low)));
+        }
+
+        LinkedHashSet<String> neighbours = new LinkedHashSet<>();
+        int removed = -1;
+        int i = 0;
+        for (String neighbour : target.neighbours) {
+            if (i++ == position) removed = index(neighbour);
+            else neighbours.add(neighbour);
+        }
+
+        edit(node, removed, -1, neighbours, truths);
+    }
+
+    /**
+     * @return Zobrist hash of the network's truth tables and wiring, including the current move
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * @param node node index
+     * @return indices of the node's inputs, in neighbour set order
+     */
+    public int[] inputs(int node) {
+        int[] inputs = new int[nodes[node].neighbours.size()];
+        int i = 0;
+        for (String neighbour : nodes[node].neighbours) inputs[i++] = index(neighbour);
+        return inputs;
+    }
+
+    /**
+     * @return number of flips in the current move
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return number of wiring edits (rewires, added and removed inputs) in the current move
+     */
+    public int edits() {
+        return editCount;
+    }
+
+    /**
+     * @return node index of each wiring edit in the current move, only the first edits() entries are valid
+     */
+    public int[] editNodes() {
+        return editNode;
+    }
+
+    /**
+     * @return node index of each flip in the current move, only the first count() entries are valid
+     */
+    public int[] nodes() {
+        return flipNodes;
+    }
+
+    /**
+     * @return truth table row of each flip in the current move, only the first count() entries are valid
+     */
+    public int[] rows() {
+        return flipRows;
+    }
+
+    /**
+     * @param node node index
+     * @return number of flips made to the node in the current move
+     */
+    public int flips(int node) {
+        int flips = 0;
+        for (int i = 0; i < count; i++) if (flipNodes[i] == node) flips++;
+        return flips;
+    }
+
+    /**
+     * @param node node index
+     * @param row truth table row
+     * @return true if the row has already been flipped in the current move
+     */
+    public boolean flipped(int node, int row) {
+        for (int i = 0; i < count; i++) if (flipNodes[i] == node && flipRows[i] == row) return true;
+        return false;
+    }
+
+    /**
+     * Keeps the current move and clears the journal for the next one
+     */
+    public void commit() {
+        count = 0;
+        editNeighbours.clear();
+        Arrays.fill(editTruths, 0, editCount, null);
+        editCount = 0;
+    }
+
+    /**
+     * Undoes the current move, restoring the network to its state when the move began
+     */
+    public void rollback() {
+        int edit = editCount - 1;
+        for (int i = count; i >= 0; i--) {
+            while (edit >= 0 && editAt[edit] == i) undoEdit(edit--);
+            if (i == 0) break;
+
+            nodes[flipNodes[i - 1]].truths.flip(flipRows[i - 1]);
+            if (compiled != null) compiled.flipTruth(flipNodes[i - 1], flipRows[i - 1]);
+            hash ^= ZobristHash.key(flipNodes[i - 1], flipRows[i - 1]);
+        }
+        count = 0;
+        editCount = 0;
+    }
+
+    /**
+     * Replaces a node's neighbour set and truth table, recording the old ones and updating the hash and out-neighbours
+     */
+    private void edit(int node, int removed, int added, LinkedHashSet<String> neighbours, TruthTable truths) {
+        if (editCount == editNode.length) {
+            int length = editCount << 1;
+            editNode = Arrays.copyOf(editNode, length);
+            editAt = Arrays.copyOf(editAt, length);
+            editRemoved = Arrays.copyOf(editRemoved, length);
+            editAdded = Arrays.copyOf(editAdded, length);
+            editHash = Arrays.copyOf(editHash, length);
+            editTruths = Arrays.copyOf(editTruths, length);
+        }
+
+        BNNode target = nodes[node];
+        editNode[editCount] = node;
+        editAt[editCount] = count;
+        editRemoved[editCount] = removed;
+        editAdded[editCount] = added;
+        editHash[editCount] = hash;
+        editNeighbours.add(target.neighbours);
+        editTruths[editCount] = target.truths;
+        editCount++;
+
+        hash ^= ZobristHash.node(node, target, index);
+        target.neighbours = neighbours;
+        target.truths = truths;
+        hash ^= ZobristHash.node(node, target, index);
+        if (compiled != null) compiled.setNode(node, inputs(node), truths);
+
+        if (removed >= 0) unlink(removed, node);
+        if (added >= 0) link(added, node);
+    }
+
+    private void undoEdit(int edit) {
+        BNNode target = nodes[editNode[edit]];
+        target.neighbours = editNeighbours.remove(edit);
+        target.truths = editTruths[edit];
+        hash = editHash[edit];
+        if (compiled != null) compiled.setNode(editNode[edit], inputs(editNode[edit]), target.truths);
+
+        if (editAdded[edit] >= 0) unlink(editAdded[edit], editNode[edit]);
+        if (editRemoved[edit] >= 0) link(editRemoved[edit], editNode[edit]);
+        editTruths[edit] = null;
+    }
+
+    private void link(int source, int node) {
+        if (outCount[source] == outs[source].length) {
+            outs[source] = Arrays.copyOf(outs[source], Math.max(4, outCount[source] << 1));
+        }
+        outs[source][outCount[source]++] = node;
+    }
+
+    private void unlink(int source, int node) {
+        int[] out = outs[source];
+        for (int i = 0; i < outCount[source]; i++) {
+            if (out[i] == node) {
+                out[i] = out[--outCount[source]];
+                return;
+            }
+        }
+    }
+
+    private static void checkPosition(BNNode node, int position) {
+        if (position < 0 || position >= node.neighbours.size()) {
+            throw new IndexOutOfBoundsException("Node " + node.name + " has no input at position " + position);
+        }
+    }
+}
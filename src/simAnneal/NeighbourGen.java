@@ -3,12 +3,15 @@ package simAnneal;
 import bnsim.nodes.BNNode;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 import static simAnneal.Utility.copyNetwork;
 
 
 /**
- * Set of methods for generating new candidate networks by randomising node truth tables
+ * Set of methods for generating new candidate networks by randomising node truth tables. Each method either returns a
+ * randomised copy of the network, or applies the move in place through a MoveJournal so it can be rolled back.
  */
 public class NeighbourGen {
 
@@ -22,15 +25,26 @@ public class NeighbourGen {
      * @return a randomised copy of the submitted network
      */
     public static TreeMap<String, BNNode> gen1(TreeMap<String, BNNode> currentSol, Integer nodes, Integer truthRows){
-        TreeMap<String, BNNode> output = copyNetwork(currentSol);
+        return gen1(currentSol, nodes, truthRows, ThreadLocalRandom.current());
+    }
 
-        Random random = new Random();
+    /**
+     * Copies a network then randomises a given number of truth table rows on a given number of nodes in a network
+     * @param currentSol network to randomise
+     * @param nodes number of nodes to randomise
+     * @param truthRows number of truth table rows to randomise (per node)
+     * @param random random number generator
+     * @return a randomised copy of the submitted network
+     */
+    public static TreeMap<String, BNNode> gen1(TreeMap<String, BNNode> currentSol, Integer nodes, Integer truthRows,
+                                               RandomGenerator random){
+        TreeMap<String, BNNode> output = copyNetwork(currentSol);
 
         ArrayList<String> keyArray = new ArrayList<>(output.keySet());
         ArrayList<String> nodeKeys  = new ArrayList<>();
         while (nodeKeys.size() < nodes) nodeKeys.add(keyArray.get(random.nextInt(currentSol.size()))); //get random String keys
 
-        for (String key: nodeKeys) randNodeTruths(output.get(key), truthRows);
+        for (String key: nodeKeys) randNodeTruths(output.get(key), truthRows, random);
 
         return output;
     }
@@ -44,9 +58,21 @@ public class NeighbourGen {
      * @return new, randomised network
      */
     public static TreeMap<String, BNNode> genRandFixed(TreeMap<String, BNNode> network, Integer rows, Integer truthsMax){
+        return genRandFixed(network, rows, truthsMax, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Neighbour generation that flips a specified number of random bits across a copy of the network
+     * @param network network to randomise
+     * @param rows number of bits to flip
+     * @param truthsMax size of smallest node truth table
+     * @param random random number generator
+     * @return new, randomised network
+     */
+    public static TreeMap<String, BNNode> genRandFixed(TreeMap<String, BNNode> network, Integer rows, Integer truthsMax,
+                                                       RandomGenerator random){
         TreeMap<String, BNNode> output = copyNetwork(network);
         ArrayList<String> keyArray = new ArrayList<>(output.keySet());
-        Random random = new Random();
 
         HashMap<String, Integer> toRand = new HashMap<>();
 
@@ -61,7 +87,7 @@ public class NeighbourGen {
             }
         }
 
-        toRand.forEach((k,v) -> randNodeTruths(output.get(k), v));
+        toRand.forEach((k,v) -> randNodeTruths(output.get(k), v, random));
 
         return output;
     }
@@ -75,9 +101,22 @@ public class NeighbourGen {
      * @return a randomised copy of the submitted network
      */
     public static TreeMap<String, BNNode> genRand(TreeMap<String, BNNode> network, Integer upper, Integer truthsMax){
+        return genRand(network, upper, truthsMax, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Randomises a random number of truth table rows within the specified bounds (inclusive of the bounds) on a copy
+     * of the network
+     * @param network network to randomise
+     * @param upper upper bound of truth table rows to randomise
+     * @param truthsMax size of smallest node truth table
+     * @param random random number generator
+     * @return a randomised copy of the submitted network
+     */
+    public static TreeMap<String, BNNode> genRand(TreeMap<String, BNNode> network, Integer upper, Integer truthsMax,
+                                                  RandomGenerator random){
         TreeMap<String, BNNode> output = copyNetwork(network);
         ArrayList<String> keyArray = new ArrayList<>(output.keySet());
-        Random random = new Random();
 
         int rows = random.nextInt(1, upper + 1);
 
@@ -94,7 +133,7 @@ public class NeighbourGen {
             }
         }
 
-        toRand.forEach((k,v) -> randNodeTruths(output.get(k), v));
+        toRand.forEach((k,v) -> randNodeTruths(output.get(k), v, random));
 
         return output;
     }
@@ -108,9 +147,23 @@ public class NeighbourGen {
      * @return a randomised copy of the submitted network
      */
     public static TreeMap<String, BNNode> genRandGauss(TreeMap<String, BNNode> network, Integer totalTruths, Integer median, Double stddev, Integer truthsMax){
+        return genRandGauss(network, totalTruths, median, stddev, truthsMax, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Randomises a random number of truth table rows within a Gaussian/normal distribution on a copy of the network
+     * @param network network to randomise
+     * @param totalTruths Total number of truth table rows in the network
+     * @param median median for the Gaussian distribution
+     * @param stddev standard deviation for the Gaussian distribution
+     * @param truthsMax size of smallest node truth table
+     * @param random random number generator
+     * @return a randomised copy of the submitted network
+     */
+    public static TreeMap<String, BNNode> genRandGauss(TreeMap<String, BNNode> network, Integer totalTruths, Integer median,
+                                                       Double stddev, Integer truthsMax, RandomGenerator random){
         TreeMap<String, BNNode> output = copyNetwork(network);
         ArrayList<String> keyArray = new ArrayList<>(output.keySet());
-        Random random = new Random();
 
         int amount; //number of rows to randomise
         do {
@@ -130,7 +183,7 @@ public class NeighbourGen {
             }
         }
 
-        toRand.forEach((k,v) -> randNodeTruths(output.get(k), v));
+        toRand.forEach((k,v) -> randNodeTruths(output.get(k), v, random));
 
         return output;
     }
@@ -141,10 +194,19 @@ public class NeighbourGen {
      * @return copied and randomised network
      */
     public static TreeMap<String, BNNode> randAllTruths(TreeMap<String, BNNode> network){
+        return randAllTruths(network, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Copies a network then randomises all truth table entries for each node.
+     * @param network network to randomise
+     * @param random random number generator
+     * @return copied and randomised network
+     */
+    public static TreeMap<String, BNNode> randAllTruths(TreeMap<String, BNNode> network, RandomGenerator random){
         TreeMap<String, BNNode> output = copyNetwork(network);
 
         //Randomise truth table entries for each node in the output network
-        Random random = new Random();
         output.forEach((K,V) -> {
             for (int i = 0; i < 1 << V.neighbours.size(); i++) {
                 V.truths.set(i, random.nextBoolean());
@@ -154,18 +216,157 @@ public class NeighbourGen {
         return output;
     }
 
+    /**
+     * In place version of gen1. Randomises a given number of truth table rows on a given number of nodes, recording
+     * the flips in the journal.
+     * @param move journal of the network to randomise
+     * @param nodes number of nodes to randomise
+     * @param truthRows number of truth table rows to randomise (per node)
+     * @param random random number generator
+     */
+    public static void gen1(MoveJournal move, int nodes, int truthRows, RandomGenerator random){
+        for (int i = 0; i < nodes; i++) flipNodeTruths(move, random.nextInt(move.size()), truthRows, random);
+    }
+
+    /**
+     * In place version of genRandFixed. Flips a specified number of random bits across the network, with no more than
+     * truthsMax distinct rows flipped on any one node, recording the flips in the journal.
+     * @param move journal of the network to randomise
+     * @param rows number of bits to flip
+     * @param truthsMax size of smallest node truth table
+     * @param random random number generator
+     */
+    public static void genRandFixed(MoveJournal move, int rows, int truthsMax, RandomGenerator random){
+        for (int i = 0; i < rows; i++) {
+            int node = random.nextInt(move.size());
+            if (move.flips(node) < truthsMax) flipNodeTruths(move, node, 1, random);
+        }
+    }
+
+    /**
+     * In place version of genRand. Randomises a random number of truth table rows within the specified bounds
+     * (inclusive of the bounds), recording the flips in the journal.
+     * @param move journal of the network to randomise
+     * @param upper upper bound of truth table rows to randomise
+     * @param truthsMax size of smallest node truth table
+     * @param random random number generator
+     */
+    public static void genRand(MoveJournal move, int upper, int truthsMax, RandomGenerator random){
+        genRandFixed(move, random.nextInt(1, upper + 1), truthsMax, random);
+    }
+
+    /**
+     * In place version of genRandGauss. Randomises a random number of truth table rows within a Gaussian/normal
+     * distribution, recording the flips in the journal.
+     * @param move journal of the network to randomise
+     * @param totalTruths Total number of truth table rows in the network
+     * @param median median for the Gaussian distribution
+     * @param stddev standard deviation for the Gaussian distribution
+     * @param truthsMax size of smallest node truth table
+     * @param random random number generator
+     */
+    public static void genRandGauss(MoveJournal move, int totalTruths, int median, double stddev, int truthsMax,
+                                    RandomGenerator random){
+        int amount; //number of rows to randomise
+        do {
+            amount = (int) Math.round(Math.abs(random.nextGaussian(median, stddev))); //generate random positive from Gaussian
+        } while (amount > totalTruths); //Check not larger than # of truth tables in network, if so generate new number
+
+        genRandFixed(move, amount, truthsMax, random);
+    }
+
+    /**
+     * Moves a given number of random input edges to new source nodes, recording the changes in the journal. Each moved
+     * edge keeps its place in the truth table, so the node applies the same function to its new inputs. Nodes whose
+     * inputs cannot be moved (no inputs, or every other node already an input) are skipped.
+     * @param move journal of the network to rewire
+     * @param edges number of edges to move
+     * @param random random number generator
+     */
+    public static void rewire(MoveJournal move, int edges, RandomGenerator random){
+        for (int i = 0; i < edges; i++) {
+            int node = random.nextInt(move.size());
+            int inputs = move.inputCount(node);
+            if (inputs > 0 && inputs < move.size() - 1) {
+                move.rewire(node, random.nextInt(inputs), randomSource(move, node, random));
+            }
+        }
+    }
+
+    /**
+     * Adds an input to a random node with fewer than maxInputs inputs, recording the change in the journal. The node's
+     * truth table doubles in size and ignores the new input until later moves change it.
+     * @param move journal of the network to change
+     * @param maxInputs largest number of inputs a node may have
+     * @param random random number generator
+     */
+    public static void addInput(MoveJournal move, int maxInputs, RandomGenerator random){
+        int node = random.nextInt(move.size());
+        int inputs = move.inputCount(node);
+        if (inputs < maxInputs && inputs < move.size() - 1) move.addInput(node, randomSource(move, node, random));
+    }
+
+    /**
+     * Removes a random input from a random node with more than minInputs inputs, recording the change in the
+     * journal. The node's truth table halves in size, keeping the rows for a random value of the removed input.
+     * @param move journal of the network to change
+     * @param minInputs smallest number of inputs a node may have
+     * @param random random number generator
+     */
+    public static void removeInput(MoveJournal move, int minInputs, RandomGenerator random){
+        int node = random.nextInt(move.size());
+        int inputs = move.inputCount(node);
+        if (inputs > minInputs) move.removeInput(node, random.nextInt(inputs), random.nextBoolean());
+    }
+
+    /**
+     * Chooses a random node that is neither the given node nor already one of its inputs. Make sure such a node exists.
+     * @param move journal of the network
+     * @param node index of the node to find a new input for
+     * @param random random number generator
+     * @return index of the new input
+     */
+    private static int randomSource(MoveJournal move, int node, RandomGenerator random){
+        int source;
+        do {
+            source = random.nextInt(move.size());
+        } while (source == node || move.hasInput(node, source));
+        return source;
+    }
+
     /**
      * Flips a given number of random rows on a node truth table. Make sure the number of rows required to flip is not
      * larger than the node's truth table.
      * @param node node to randomise
      * @param rows number of rows to randomise
+     * @param random random number generator
      */
-    private static void randNodeTruths(BNNode node, Integer rows){
-        Random random = new Random();
-
+    private static void randNodeTruths(BNNode node, Integer rows, RandomGenerator random){
         HashSet<Integer> rowsToRand = new HashSet<>();
         while (rowsToRand.size() < rows) rowsToRand.add(random.nextInt(1 << node.neighbours.size()));
 
         for (Integer row: rowsToRand) node.truths.flip(row);
     }
+
+    /**
+     * Flips a given number of random rows on a node truth table that have not already been flipped in the current
+     * move, recording the flips in the journal. Make sure the number of rows required to flip is not larger than the
+     * node's truth table.
+     * @param move journal of the network
+     * @param node index of the node to randomise
+     * @param rows number of rows to randomise
+     * @param random random number generator
+     */
+    private static void flipNodeTruths(MoveJournal move, int node, int rows, RandomGenerator random){
+        int tableSize = 1 << move.node(node).neighbours.size();
+        rows = Math.min(rows, tableSize - move.flips(node)); //rows already flipped in this move cannot be chosen again
+
+        for (int i = 0; i < rows; i++) {
+            int row;
+            do {
+                row = random.nextInt(tableSize);
+            } while (move.flipped(node, row));
+            move.flip(node, row);
+        }
+    }
 }
@@ -1,80 +1,210 @@
 package simAnneal;
 
 import bnsim.nodes.BNNode;
-import bnsim.process.RunNetwork;
+import bnsim.process.Attractor;
+import bnsim.process.BitParallelRun;
+import bnsim.process.CompiledNetwork;
+import bnsim.process.Landscape;
+import bnsim.process.UpdateScheme;
 
-import java.util.Iterator;
-import java.util.TreeMap;
-import java.util.TreeSet;
-
-import static bnsim.process.RunNetwork.iterateStrTrace;
+import java.util.*;
 
 /**
  * Objective functions for scoring candidate networks by comparing their network trace to a desired trace.
  * Score based on Hamming distance between the actual network trace and desired network trace
  */
 public class Objective {
+    public static final int ATTRACTOR_STEPS = 500; //Iterations scoreNet2 spends searching for an attractor
 
     /**
      * Iterates a network number of times defined by desired trace (comma separated, e.g.: 000,001,000). Returns hamming
-     * distance between the trace of the candidate network trace and desired trace.
+     * distance between the trace of the candidate network trace and desired trace. Each step is compared over the
+     * nodes it gives, in the natural order of node names. The network's node states are left at the final step.
      * @param network network to score
      * @param desiredTrace String representation of the desired trace
      * @return an int score based on hamming distance
      */
     public static int scoreNetwork(TreeMap<String, BNNode> network, String desiredTrace){
-        StringBuilder netTrace = new StringBuilder();
+        return scoreNetwork(network, PackedTrace.parse(desiredTrace));
+    }
+
+    /**
+     * Scores a network as scoreNetwork does against a desired trace parsed in advance, which may weight its nodes.
+     * The trace is compared as packed bits, by XOR and bit count.
+     * @param network network to score
+     * @param desiredTrace packed desired trace
+     * @return an int score based on (weighted) hamming distance
+     */
+    public static int scoreNetwork(TreeMap<String, BNNode> network, PackedTrace desiredTrace){
+        CompiledNetwork compiled = CompiledNetwork.compile(network);
+        int dist = desiredTrace.score(compiled);
+        compiled.storeStates(network);
+        return dist;
+    }
+
+    /**
+     * Scores the network of a move journal as scoreNetwork does, but simulates the journal's compiled view of the
+     * network rather than compiling it again, so scoring a candidate does not allocate. The network's node states are
+     * loaded into the view first and stored back at the final step, as with scoreNetwork.
+     * @param move journal of the network to score
+     * @param desiredTrace packed desired trace
+     * @return an int score based on (weighted) hamming distance
+     */
+    public static int scoreNetwork(MoveJournal move, PackedTrace desiredTrace){
+        CompiledNetwork compiled = move.compiled();
+        compiled.loadStates(move.network());
+        int dist = desiredTrace.score(compiled);
+        compiled.storeStates(move.network());
+        return dist;
+    }
+
+    /**
+     * Scores the network of a move journal as scoreNetwork(MoveJournal, PackedTrace) does, iterating it under the given
+     * update scheme
+     * @param move journal of the network to score
+     * @param desiredTrace packed desired trace
+     * @param scheme update scheme the network is iterated under
+     * @return an int score based on (weighted) hamming distance
+     */
+    public static int scoreNetwork(MoveJournal move, PackedTrace desiredTrace, UpdateScheme scheme){
+        CompiledNetwork compiled = move.compiled();
+        compiled.loadStates(move.network());
+        int dist = desiredTrace.score(compiled, scheme);
+        compiled.storeStates(move.network());
+        return dist;
+    }
+
+    /**
+     * Scores a network as scoreNetwork does, but iterating it under the given update scheme rather than synchronously.
+     * The network's node states are left at the final step, as with scoreNetwork.
+     * @param network network to score
+     * @param desiredTrace String representation of the desired trace
+     * @param scheme update scheme the network is iterated under
+     * @return an int score based on hamming distance
+     */
+    public static int scoreNetwork(TreeMap<String, BNNode> network, String desiredTrace, UpdateScheme scheme){
+        return scoreNetwork(network, PackedTrace.parse(desiredTrace), scheme);
+    }
+
+    /**
+     * Scores a network against a desired trace parsed in advance, iterating it under the given update scheme
+     * @param network network to score
+     * @param desiredTrace packed desired trace
+     * @param scheme update scheme the network is iterated under
+     * @return an int score based on (weighted) hamming distance
+     */
+    public static int scoreNetwork(TreeMap<String, BNNode> network, PackedTrace desiredTrace, UpdateScheme scheme){
+        CompiledNetwork compiled = CompiledNetwork.compile(network);
+        int dist = desiredTrace.score(compiled, scheme);
+        compiled.storeStates(network);
+        return dist;
+    }
 
-        for (int i = 0; i < desiredTrace.split(",").length; i++) {
-            String iterationTrace = RunNetwork.iterateStrTrace(network, 1);
-            netTrace.append(iterationTrace).append(",");
+    /**
+     * Scores a network from each of a batch of initial states, as scoreNetwork would if the network were reset to each
+     * state in turn. States are simulated 64 at a time with a bit-parallel simulator. The network's own node states
+     * are not modified.
+     * @param network network to score
+     * @param initialStates list of Maps of Strings (node names) and Boolean values
+     * @param desiredTrace String representation of the desired trace
+     * @return an int score based on hamming distance for each initial state, in the order given
+     */
+    public static int[] scoreNetworks(TreeMap<String, BNNode> network, List<Map<String, Boolean>> initialStates,
+                                      String desiredTrace){
+        CompiledNetwork compiled = CompiledNetwork.compile(network);
+        BitParallelRun run = new BitParallelRun(compiled);
+        PackedTrace steps = PackedTrace.parse(desiredTrace);
+        int[] scores = new int[initialStates.size()];
+
+        for (int from = 0; from < initialStates.size(); from += BitParallelRun.LANES) {
+            run.load(initialStates, from);
+            long active = run.active();
+
+            for (int step = 0; step < steps.steps(); step++) {
+                run.step();
+                for (int node = 0; node < compiled.size(); node++) {
+                    if (steps.weight(step, node) == 0) continue;
+                    long mismatch = (steps.get(step, node) ? ~run.lane(node) : run.lane(node)) & active;
+                    while (mismatch != 0) {
+                        scores[from + Long.numberOfTrailingZeros(mismatch)]++;
+                        mismatch &= mismatch - 1;
+                    }
+                }
+            }
         }
-        return hammingDist(desiredTrace, netTrace.toString());
+
+        return scores;
     }
 
     /**
      * Iterates a network until it falls into an attractor. Compares that attractor to the desired attractor. Scores
      * the network based on Hamming distance between the network trace and desired attractor network trace. Desired
-     * trace represented by a comma separated String (e.g.: 000,001,000).
+     * trace represented by a comma separated String (e.g.: 000,001,000). The attractor's cycle is compared in temporal
+     * order from the first cycle state the network reaches, repeating the cycle if it is shorter than the desired
+     * trace. A network that does not reach an attractor within ATTRACTOR_STEPS iterations gets the worst possible
+     * score. The search runs on a compiled copy of the network, so unlike scoreNetwork the network's node states are
+     * left as they were rather than at the state the search stopped in, which scores do not depend on.
      * @param network network to score
      * @param desiredTrace network trace of desired attractor
      * @return int score based on Hamming distance
      */
     public static int scoreNet2(TreeMap<String, BNNode> network, String desiredTrace){
-        TreeSet<String> netTraces = new TreeSet<>();
-        String finalTrace = null;
-        StringBuilder attractor = new StringBuilder();
-
-        for (int i = 0; i < 500; i++) {
-            String iterTrace = iterateStrTrace(network, 1);
-            if (!netTraces.add(iterTrace)) {
-                finalTrace = iterTrace;
-                break;
-            }
-        }
+        return scoreNet2(CompiledNetwork.compile(network), desiredTrace);
+    }
 
-        Iterator iterator = netTraces.tailSet(finalTrace).iterator();
+    /**
+     * Scores the network of a move journal as scoreNet2 does, searching for the attractor on the journal's compiled
+     * view of the network rather than compiling it again. The network's node states are loaded into the view first and
+     * are not modified.
+     * @param move journal of the network to score
+     * @param desiredTrace network trace of desired attractor
+     * @return int score based on Hamming distance
+     */
+    public static int scoreNet2(MoveJournal move, String desiredTrace){
+        CompiledNetwork compiled = move.compiled();
+        compiled.loadStates(move.network());
+        return scoreNet2(compiled, desiredTrace);
+    }
 
+    private static int scoreNet2(CompiledNetwork compiled, String desiredTrace){
+        Attractor attractor = Attractor.find(compiled, ATTRACTOR_STEPS);
+        String[] steps = desiredTrace.split(",");
 
-        for (int i = 0; i < desiredTrace.split(",").length; i++) {
-            attractor.append(iterator.next());
+        int dist = 0;
+        for (int i = 0; i < steps.length; i++) {
+            int width = Math.min(steps[i].length(), compiled.size());
+            for (int node = 0; node < width; node++) {
+                if (attractor == null || attractor.get(i % attractor.cycleLength, node) != (steps[i].charAt(node) == '1')) {
+                    dist++;
+                }
+            }
         }
 
-        return hammingDist(desiredTrace, attractor.toString());
+        return dist;
     }
 
     /**
-     * Takes two Strings of the same length and computes hamming distance
+     * Scores a network on its whole attractor landscape rather than the attractor reached from one initial state.
+     * Every network state is enumerated, and the score is the number of states that do not fall into the desired
+     * attractor, so networks where the desired attractor has a larger basin score better. Desired attractor
+     * represented by a comma separated String (e.g.: 000,001,000), matching a cycle in any rotation. Only suitable for
+     * networks of at most Landscape.MAX_NODES nodes.
+     * @param network network to score
+     * @param desiredTrace network trace of desired attractor
+     * @return number of network states outside the basin of the desired attractor
      */
-    private static int hammingDist(String str1, String str2){
-        if (str1.isEmpty()) return 0;
+    public static long scoreLandscape(TreeMap<String, BNNode> network, String desiredTrace){
+        Landscape landscape = Landscape.enumerate(network);
+        String[] steps = desiredTrace.split(",");
 
-        int dist = 0;
+        for (int i = 0; i < landscape.attractors.size(); i++) {
+            Attractor attractor = landscape.attractors.get(i);
+            if (attractor.cycleLength != steps.length) continue;
 
-        for (int i = 0; i < str1.length(); i++) {
-            if (str1.charAt(i) != str2.charAt(i)) dist ++;
+            String cycle = attractor.trace() + "," + attractor.trace();
+            if (cycle.contains(desiredTrace)) return landscape.totalStates() - landscape.basinSizes[i];
         }
 
-        return dist;
+        return 1L << network.size();
     }
 }
\ No newline at end of file
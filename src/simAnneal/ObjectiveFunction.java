@@ -0,0 +1,181 @@
+package simAnneal;
+
+import bnsim.process.UpdateScheme;
+
+import java.util.Map;
+
+/**
+ * Scores the current solution of an annealing run, lower being better. Every call to score is followed by a call to
+ * accepted or rejected once the annealing loop has decided on the candidate, which lets stateful objectives (such as
+ * an IncrementalScorer) keep their cached state in step with the current solution. The static factories wrap the
+ * scoring methods of Objective.
+ */
+@FunctionalInterface
+public interface ObjectiveFunction {
+
+    /**
+     * @param move journal of the current solution, with the candidate move applied
+     * @return score of the candidate
+     */
+    int score(MoveJournal move);
+
+    /**
+     * Scores a candidate that will be rejected if its score reaches a bound, letting the objective stop early once it
+     * knows the candidate is that bad. Only called when bounded returns true.
+     * @param move journal of the current solution, with the candidate move applied
+     * @param bound score at or above which the candidate is rejected
+     * @return score of the candidate, or any value of at least bound if scoring stopped early
+     */
+    default int score(MoveJournal move, int bound) {
+        return score(move);
+    }
+
+    /**
+     * @return true if the objective can stop early given a bound, in which case the annealing loop draws its
+     *         acceptance random number before scoring so that the bound is known
+     */
+    default boolean bounded() {
+        return false;
+    }
+
+    /**
+     * @return true if score may be called from several threads at once and the objective needs no calls to accepted
+     *         or rejected, as engines that score candidates in parallel require
+     */
+    default boolean stateless() {
+        return true;
+    }
+
+    /**
+     * Called when the last scored candidate becomes the current solution
+     */
+    default void accepted() {}
+
+    /**
+     * Called when the last scored candidate is discarded
+     */
+    default void rejected() {}
+
+    /**
+     * Scores with Objective.scoreNetwork after resetting the network to an initial state
+     * @param desiredTrace String representation of the desired trace
+     * @param initialState Map of Strings (node names) and Boolean values
+     * @return objective function
+     */
+    static ObjectiveFunction trace(String desiredTrace, Map<String, Boolean> initialState) {
+        return trace(PackedTrace.parse(desiredTrace), initialState);
+    }
+
+    /**
+     * Scores with Objective.scoreNetwork against a desired trace parsed in advance, which may weight its nodes, after
+     * resetting the network to an initial state
+     * @param desiredTrace packed desired trace
+     * @param initialState Map of Strings (node names) and Boolean values
+     * @return objective function
+     */
+    static ObjectiveFunction trace(PackedTrace desiredTrace, Map<String, Boolean> initialState) {
+        return move -> {
+            Utility.setState(move.network(), initialState);
+            return Objective.scoreNetwork(move, desiredTrace);
+        };
+    }
+
+    /**
+     * Scores with Objective.scoreNetwork under an update scheme after resetting the network to an initial state. A
+     * random scheme gives a stochastic objective, and as the scheme holds its generator the objective must not be
+     * shared between threads.
+     * @param desiredTrace String representation of the desired trace
+     * @param initialState Map of Strings (node names) and Boolean values
+     * @param scheme update scheme the network is iterated under
+     * @return objective function
+     */
+    static ObjectiveFunction trace(String desiredTrace, Map<String, Boolean> initialState, UpdateScheme scheme) {
+        PackedTrace trace = PackedTrace.parse(desiredTrace);
+        return new ObjectiveFunction() {
+            @Override
+            public int score(MoveJournal move) {
+                Utility.setState(move.network(), initialState);
+                return Objective.scoreNetwork(move, trace, scheme);
+            }
+
+            @Override
+            public boolean stateless() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Scores with Objective.scoreNet2 after resetting the network to an initial state
+     * @param desiredTrace network trace of desired attractor
+     * @param initialState Map of Strings (node names) and Boolean values
+     * @return objective function
+     */
+    static ObjectiveFunction attractor(String desiredTrace, Map<String, Boolean> initialState) {
+        return move -> {
+            Utility.setState(move.network(), initialState);
+            return Objective.scoreNet2(move, desiredTrace);
+        };
+    }
+
+    /**
+     * Scores incrementally from the flips and wiring edits recorded in the journal. The scorer must have been built
+     * from the same network the annealing run starts from, and gives the same scores as trace with that network's
+     * initial state.
+     * Moves that rewire, add or remove inputs are scored too, following the journal's wiring.
+     * @param scorer incremental scorer of the starting network
+     * @return objective function
+     */
+    static ObjectiveFunction incremental(IncrementalScorer scorer) {
+        return new ObjectiveFunction() {
+            @Override
+            public int score(MoveJournal move) {
+                return scorer.evaluate(move);
+            }
+
+            @Override
+            public boolean stateless() {
+                return false;
+            }
+
+            @Override
+            public void accepted() {
+                scorer.accept();
+            }
+
+            @Override
+            public void rejected() {
+                scorer.reject();
+            }
+        };
+    }
+
+    /**
+     * Caches the scores of a stateless objective by the network's Zobrist hash, so a candidate that revisits a network
+     * already scored (for example a flip followed by the same flip back) is not scored again. A stateful objective
+     * such as incremental must not be wrapped, as it is not called on a cache hit. The cache is not thread safe, so the
+     * cached objective is not stateless.
+     * @param objective stateless objective to cache
+     * @param cache cache used only with this objective
+     * @return objective function
+     */
+    static ObjectiveFunction cached(ObjectiveFunction objective, ScoreCache cache) {
+        return new ObjectiveFunction() {
+            @Override
+            public int score(MoveJournal move) {
+                long key = move.hash();
+                int score = cache.get(key);
+                if (score == ScoreCache.MISS) {
+                    score = objective.score(move);
+                    cache.put(key, score);
+                }
+                return score;
+            }
+
+            @Override
+            public boolean stateless() {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,174 @@
+package simAnneal;
+
+import bnsim.process.CompiledNetwork;
+import bnsim.process.UpdateScheme;
+
+/**
+ * A desired trace parsed once into packed bits, so a network trace can be scored by XOR and Long.bitCount rather than
+ * character by character. Each step is a packed network state, node i being bit (i &amp; 63) of word (i &gt;&gt;&gt; 6)
+ * as in CompiledNetwork.state().
+ * <p>
+ * Every node of every step has a weight, the amount a mismatch on it adds to the distance. By default nodes given in
+ * a step weigh 1, and nodes past the end of the step's string (or of the network) weigh 0 and are not compared.
+ * Weights are held as bit planes, plane b marking the nodes whose weight has bit b set, so a weighted distance is
+ * still a sum of bit counts.
+ */
+public final class PackedTrace {
+    private final int[] widths; //Number of nodes given in each step
+    private final long[][] desired; //Desired packed state of each step
+    private final long[][][] planes; //Weight bit planes, planes[b][step] marking the nodes whose weight has bit b set
+
+    private PackedTrace(int[] widths, long[][] desired, long[][][] planes) {
+        this.widths = widths;
+        this.desired = desired;
+        this.planes = planes;
+    }
+
+    /**
+     * @param desiredTrace String representation of the desired trace, comma separated (e.g.: 000,001,000)
+     * @return packed trace comparing every node given in each step with weight 1
+     */
+    public static PackedTrace parse(String desiredTrace) {
+        String[] steps = desiredTrace.split(",");
+        int[] widths = new int[steps.length];
+        long[][] desired = new long[steps.length][];
+        long[][] mask = new long[steps.length][];
+
+        for (int step = 0; step < steps.length; step++) {
+            int width = steps[step].length();
+            widths[step] = width;
+            desired[step] = new long[CompiledNetwork.stateWords(width)];
+            mask[step] = new long[desired[step].length];
+            for (int node = 0; node < width; node++) {
+                if (steps[step].charAt(node) == '1') desired[step][node >>> 6] |= 1L << node;
+                mask[step][node >>> 6] |= 1L << node;
+            }
+        }
+
+        return new PackedTrace(widths, desired, new long[][][]{mask});
+    }
+
+    /**
+     * Gives each node of each step its own weight, for example 0 to ignore a node at a step or a higher weight for
+     * nodes that matter most
+     * @param weights non-negative weight of each node at each step, indexed [step][node]. Nodes past the end of a
+     *                step's weights, or of the step itself, weigh 0
+     * @return packed trace with the same desired states and the given weights
+     */
+    public PackedTrace weighted(int[][] weights) {
+        if (weights.length != desired.length) {
+            throw new IllegalArgumentException("Weights have " + weights.length + " steps, trace has "
+                    + desired.length);
+        }
+
+        int max = 0;
+        for (int[] step : weights) {
+            for (int weight : step) {
+                if (weight < 0) throw new IllegalArgumentException("Weights must not be negative");
+                max = Math.max(max, weight);
+            }
+        }
+
+        long[][][] weightPlanes = new long[32 - Integer.numberOfLeadingZeros(max)][desired.length][];
+        for (int plane = 0; plane < weightPlanes.length; plane++) {
+            for (int step = 0; step < desired.length; step++) {
+                long[] bits = new long[desired[step].length];
+                int width = Math.min(weights[step].length, widths[step]);
+                for (int node = 0; node < width; node++) {
+                    if (((weights[step][node] >>> plane) & 1) != 0) bits[node >>> 6] |= 1L << node;
+                }
+                weightPlanes[plane][step] = bits;
+            }
+        }
+        return new PackedTrace(widths, desired, weightPlanes);
+    }
+
+    /**
+     * @return number of steps in the trace
+     */
+    public int steps() {
+        return desired.length;
+    }
+
+    /**
+     * @param step step of the trace
+     * @param node node index
+     * @return desired state of the node at the step
+     */
+    public boolean get(int step, int node) {
+        int word = node >>> 6;
+        return word < desired[step].length && (desired[step][word] & (1L << node)) != 0;
+    }
+
+    /**
+     * @param step step of the trace
+     * @param node node index
+     * @return weight of a mismatch on the node at the step
+     */
+    public int weight(int step, int node) {
+        if (node >= widths[step]) return 0;
+
+        int word = node >>> 6;
+        int weight = 0;
+        for (int plane = 0; plane < planes.length; plane++) {
+            if ((planes[plane][step][word] & (1L << node)) != 0) weight |= 1 << plane;
+        }
+        return weight;
+    }
+
+    /**
+     * Computes the weighted Hamming distance between a network state and one step of the trace
+     * @param step step of the trace
+     * @param state packed network state, as returned by CompiledNetwork.state()
+     * @param size number of nodes in the network; nodes of the trace beyond it are not compared
+     * @return weighted number of mismatched nodes
+     */
+    public int distance(int step, long[] state, int size) {
+        long[] want = desired[step];
+        int words = Math.min(want.length, CompiledNetwork.stateWords(size));
+        long last = (size & 63) == 0 ? -1L : (1L << size) - 1; //Mask of the network's nodes in its last word
+
+        int dist = 0;
+        for (int plane = 0; plane < planes.length; plane++) {
+            long[] mask = planes[plane][step];
+            int count = 0;
+            for (int word = 0; word < words; word++) {
+                long diff = (state[word] ^ want[word]) & mask[word];
+                if (word == (size - 1) >>> 6) diff &= last;
+                count += Long.bitCount(diff);
+            }
+            dist += count << plane;
+        }
+        return dist;
+    }
+
+    /**
+     * Iterates a compiled network synchronously once per step of the trace, from its current state, and sums the
+     * distance between each new state and the step. The network is left in its final state.
+     * @param network network to score
+     * @return weighted Hamming distance over the trace
+     */
+    public int score(CompiledNetwork network) {
+        int dist = 0;
+        for (int step = 0; step < desired.length; step++) {
+            network.iterate(1);
+            dist += distance(step, network.state(), network.size());
+        }
+        return dist;
+    }
+
+    /**
+     * Scores a compiled network as score does, but iterating it under the given update scheme
+     * @param network network to score
+     * @param scheme update scheme the network is iterated under
+     * @return weighted Hamming distance over the trace
+     */
+    public int score(CompiledNetwork network, UpdateScheme scheme) {
+        int dist = 0;
+        for (int step = 0; step < desired.length; step++) {
+            scheme.step(network);
+            dist += distance(step, network.state(), network.size());
+        }
+        return dist;
+    }
+}
@@ -0,0 +1,193 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static simAnneal.Utility.copyNetwork;
+
+/**
+ * Parallel tempering (replica exchange) annealing engine. A replica of the network is annealed at each temperature of a
+ * ladder, with replicas running their Metropolis steps in parallel on a ForkJoin pool. After every sweep, swaps of
+ * configurations between adjacent temperatures are attempted with the Metropolis criterion for replica exchange, which
+ * lets good configurations found at high temperatures move down to the cold end of the ladder.
+ * <p>
+ * Moves are applied in place through each replica's MoveJournal. The objective is shared by all replicas and called
+ * concurrently, so it must be stateless, such as ObjectiveFunction.trace. Its accepted and rejected callbacks are
+ * never called, and an objective that is not stateless, such as ObjectiveFunction.incremental or cached, is rejected.
+ */
+public class ParallelTempering {
+    private final double[] temperatures; //Temperature ladder, coldest first
+    private final MoveGenerator move;
+    private final ObjectiveFunction objective;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Result of a parallel tempering run
+     */
+    public static class Result {
+        public final TreeMap<String, BNNode> bestNetwork; //Best network found by any replica
+        public final int bestScore; //Score of the best network
+        public final int[] finalScores; //Score of the replica at each temperature at the end of the run
+        public final long swapsAttempted;
+        public final long swapsAccepted;
+
+        Result(TreeMap<String, BNNode> bestNetwork, int bestScore, int[] finalScores, long swapsAttempted,
+               long swapsAccepted) {
+            this.bestNetwork = bestNetwork;
+            this.bestScore = bestScore;
+            this.finalScores = finalScores;
+            this.swapsAttempted = swapsAttempted;
+            this.swapsAccepted = swapsAccepted;
+        }
+    }
+
+    /**
+     * A single chain of the ensemble, owning its network, journal and its own split of the run's random number
+     * generator
+     */
+    private class Replica implements Callable<Void> {
+        final TreeMap<String, BNNode> network;
+        final MoveJournal journal;
+        final Rng random;
+        int score;
+        double temperature;
+        int steps;
+        TreeMap<String, BNNode> best;
+        int bestScore;
+
+        Replica(TreeMap<String, BNNode> network, Rng random) {
+            this.network = network;
+            this.journal = new MoveJournal(network);
+            this.random = random;
+            this.score = objective.score(journal);
+            this.best = copyNetwork(network);
+            this.bestScore = score;
+        }
+
+        @Override
+        public Void call() {
+            for (int i = 0; i < steps; i++) {
+                move.apply(journal, random);
+
+                int candScore = objective.score(journal);
+                int delta = candScore - score;
+
+                //Accept if improvement, or if worse but passes acceptance criterion
+                if (delta < 0 || (delta > 0 && random.nextDouble(0, 1) < Math.exp(-delta / temperature))) {
+                    journal.commit();
+                    score = candScore;
+                    if (score < bestScore) {
+                        bestScore = score;
+                        best = copyNetwork(network);
+                    }
+                } else {
+                    journal.rollback();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param temperatures temperature of each replica, coldest first
+     * @param move in place move applied to a replica's network to generate a candidate
+     * @param objective stateless objective, lower is better
+     */
+    public ParallelTempering(double[] temperatures, MoveGenerator move, ObjectiveFunction objective) {
+        if (temperatures.length < 2) throw new IllegalArgumentException("At least two temperatures are required");
+        if (!objective.stateless()) {
+            throw new IllegalArgumentException("Replicas share the objective, which must be stateless");
+        }
+        this.temperatures = temperatures.clone();
+        this.move = move;
+        this.objective = objective;
+    }
+
+    /**
+     * Sets the pool replicas are run on. Defaults to the common ForkJoin pool.
+     * @param pool pool to run replicas on
+     * @return this engine
+     */
+    public ParallelTempering pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Generates a geometric temperature ladder, which gives roughly even swap acceptance between adjacent temperatures
+     * when the score variance changes slowly with temperature.
+     * @param coldest lowest temperature
+     * @param hottest highest temperature
+     * @param replicas number of temperatures
+     * @return ladder of temperatures, coldest first
+     */
+    public static double[] geometricLadder(double coldest, double hottest, int replicas) {
+        double[] ladder = new double[replicas];
+        double ratio = Math.pow(hottest / coldest, 1.0 / (replicas - 1));
+        for (int i = 0; i < replicas; i++) ladder[i] = coldest * Math.pow(ratio, i);
+        return ladder;
+    }
+
+    /**
+     * Runs the ensemble. Each replica starts from a copy of the starting network.
+     * @param start starting network, not modified
+     * @param sweeps number of sweeps, each followed by a round of swap attempts
+     * @param stepsPerSwap Metropolis steps each replica takes per sweep
+     * @param seed seed for the replica and swap random number generators
+     * @return best network found and run statistics
+     */
+    public Result run(TreeMap<String, BNNode> start, int sweeps, int stepsPerSwap, long seed) {
+        Rng random = new Rng(seed);
+
+        Replica[] replicas = new Replica[temperatures.length];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new Replica(copyNetwork(start), random.split());
+            replicas[i].temperature = temperatures[i];
+            replicas[i].steps = stepsPerSwap;
+        }
+        List<Replica> tasks = new ArrayList<>(List.of(replicas));
+
+        long attempted = 0;
+        long accepted = 0;
+        for (int sweep = 0; sweep < sweeps; sweep++) {
+            for (Future<Void> task : pool.invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            //Alternate between even and odd pairs so every adjacent pair is tried every two sweeps
+            for (int i = sweep & 1; i + 1 < replicas.length; i += 2) {
+                Replica cold = replicas[i];
+                Replica hot = replicas[i + 1];
+                double exponent = (cold.score - hot.score) * (1 / temperatures[i] - 1 / temperatures[i + 1]);
+
+                attempted++;
+                if (exponent >= 0 || random.nextDouble(0, 1) < Math.exp(exponent)) {
+                    accepted++;
+                    replicas[i] = hot;
+                    replicas[i + 1] = cold;
+                    hot.temperature = temperatures[i];
+                    cold.temperature = temperatures[i + 1];
+                }
+            }
+        }
+
+        Replica best = replicas[0];
+        int[] finalScores = new int[replicas.length];
+        for (int i = 0; i < replicas.length; i++) {
+            finalScores[i] = replicas[i].score;
+            if (replicas[i].bestScore < best.bestScore) best = replicas[i];
+        }
+
+        return new Result(best.best, best.bestScore, finalScores, attempted, accepted);
+    }
+}
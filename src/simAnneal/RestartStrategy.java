@@ -0,0 +1,39 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+import static simAnneal.Utility.copyNetwork;
+
+/**
+ * Chooses the network an annealing run restarts from when it stagnates. The Annealer reheats to its restart
+ * temperature and carries on from the returned network, keeping the best solution found so far.
+ */
+@FunctionalInterface
+public interface RestartStrategy {
+
+    /**
+     * @param current current solution, which the annealer discards after the restart
+     * @param best best solution found so far, which must not be modified
+     * @param random random number generator of the annealing run
+     * @return network to continue from, which the annealer will modify in place
+     */
+    TreeMap<String, BNNode> restart(TreeMap<String, BNNode> current, TreeMap<String, BNNode> best,
+                                    RandomGenerator random);
+
+    /**
+     * Restarts from a copy of the best solution found so far
+     */
+    static RestartStrategy fromBest() {
+        return (current, best, random) -> copyNetwork(best);
+    }
+
+    /**
+     * @see NeighbourGen#randAllTruths(TreeMap, RandomGenerator)
+     */
+    static RestartStrategy randomTruths() {
+        return (current, best, random) -> NeighbourGen.randAllTruths(current, random);
+    }
+}
@@ -0,0 +1,95 @@
+package simAnneal;
+
+import bnsim.generator.NetworkGen;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Fast, splittable and serializable random number generator using the SplitMix64 algorithm of SplittableRandom. Each
+ * split gives an independent stream, so parallel chains can each own a generator split from one seeded root and a run
+ * is repeatable for a given seed regardless of scheduling. Unlike java.util.Random it does no atomic update per draw,
+ * and unlike SplittableRandom its state can be saved in a Checkpoint, as the two longs seed and gamma. It remains
+ * Serializable so that checkpoints written before that, which serialized it, can still be read.
+ * <p>
+ * A generator is not thread safe; each thread should use its own split.
+ */
+public class Rng implements RandomGenerator, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long seed; //Current position in the stream
+    private final long gamma; //Odd step between positions, distinct for each split
+
+    /**
+     * Recreates a generator from the state saved by a Checkpoint
+     * @param seed current position in the stream
+     * @param gamma odd step between positions
+     */
+    Rng(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @param seed seed of the stream
+     */
+    public Rng(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    /**
+     * Creates a generator with an unpredictable seed
+     */
+    public Rng() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates a new generator with its own independent stream, advancing this one
+     * @return the new generator
+     */
+    public Rng split() {
+        return new Rng(nextLong(), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public long nextLong() {
+        return NetworkGen.mix64(nextSeed());
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * @return current position in the stream, as saved by a Checkpoint
+     */
+    long seed() {
+        return seed;
+    }
+
+    /**
+     * @return step between positions, as saved by a Checkpoint
+     */
+    long gamma() {
+        return gamma;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    /**
+     * Derives an odd gamma with enough bit transitions to give a well mixed stream, as SplittableRandom does
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int transitions = Long.bitCount(z ^ (z >>> 1));
+        return transitions < 24 ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+    }
+}
@@ -0,0 +1,265 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.BitParallelRun;
+import bnsim.process.CompiledNetwork;
+import bnsim.process.Landscape;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Objective that scores a network from many initial states rather than one, so annealing cannot overfit to a single
+ * starting point. The score is the sum over every trajectory of the Hamming distance to the desired trace, as
+ * Objective.scoreNetwork computes for one initial state.
+ * <p>
+ * Trajectories are simulated 64 at a time with a BitParallelRun, and batches are spread over a ForkJoin pool. Optionally
+ * each initial state is also run once per node with that node's state flipped part way along the trajectory, which
+ * rewards networks whose trace recovers from single-bit perturbations. Given a bound, scoring stops as soon as the
+ * total reaches it, since no remaining trajectory can lower the sum.
+ * <p>
+ * The objective holds no per-candidate state, so a single instance can be shared by the replicas of ParallelTempering.
+ */
+public class RobustnessObjective implements ObjectiveFunction {
+    private static final long[] LOW_BITS = { //State of node i in lane l is bit i of l, for the first 6 nodes
+            0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L};
+
+    private final int size; //Number of nodes
+    private final boolean[][] desired; //Desired state of each compared node at each step
+    private final long states; //Number of initial states
+    private final long[][] batches; //Initial states laid out for BitParallelRun, one word per node per batch of 64, or null when exhaustive
+    private int perturbStep = -1; //Step after which single-bit perturbations are applied, or -1 for none
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private RobustnessObjective(int size, String desiredTrace, long states, long[][] batches) {
+        this.size = size;
+        this.states = states;
+        this.batches = batches;
+
+        String[] steps = desiredTrace.split(",");
+        this.desired = new boolean[steps.length][];
+        for (int i = 0; i < steps.length; i++) {
+            desired[i] = new boolean[Math.min(steps[i].length(), size)];
+            for (int node = 0; node < desired[i].length; node++) desired[i][node] = steps[i].charAt(node) == '1';
+        }
+    }
+
+    /**
+     * Scores from a given list of initial states. Nodes missing from an initial state take their state in the network
+     * at the time this objective is created, as with Utility.setState.
+     * @param network network the objective will score candidates of, used for node names and default states
+     * @param desiredTrace String representation of the desired trace
+     * @param initialStates list of Maps of Strings (node names) and Boolean values
+     */
+    public RobustnessObjective(TreeMap<String, BNNode> network, String desiredTrace,
+                               List<Map<String, Boolean>> initialStates) {
+        this(network.size(), desiredTrace, initialStates.size(), layOut(network, initialStates));
+    }
+
+    /**
+     * Scores from initial states drawn uniformly at random
+     * @param network network the objective will score candidates of
+     * @param desiredTrace String representation of the desired trace
+     * @param count number of initial states
+     * @param seed seed the initial states are drawn from
+     * @return robustness objective
+     */
+    public static RobustnessObjective sampled(TreeMap<String, BNNode> network, String desiredTrace, int count,
+                                              long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[][] batches = new long[(count + BitParallelRun.LANES - 1) / BitParallelRun.LANES][network.size()];
+        for (int batch = 0; batch < batches.length; batch++) {
+            int lanes = Math.min(BitParallelRun.LANES, count - batch * BitParallelRun.LANES);
+            long active = lanes == BitParallelRun.LANES ? -1L : (1L << lanes) - 1;
+            for (int node = 0; node < network.size(); node++) batches[batch][node] = random.nextLong() & active;
+        }
+        return new RobustnessObjective(network.size(), desiredTrace, count, batches);
+    }
+
+    /**
+     * Scores from every one of the 2^N initial states. Only suitable for networks of at most Landscape.MAX_NODES nodes.
+     * @param network network the objective will score candidates of
+     * @param desiredTrace String representation of the desired trace
+     * @return robustness objective
+     */
+    public static RobustnessObjective exhaustive(TreeMap<String, BNNode> network, String desiredTrace) {
+        if (network.size() > Landscape.MAX_NODES) {
+            throw new IllegalArgumentException("Network has " + network.size() + " nodes, at most "
+                    + Landscape.MAX_NODES + " can be enumerated");
+        }
+        return new RobustnessObjective(network.size(), desiredTrace, 1L << network.size(), null);
+    }
+
+    /**
+     * Also scores, for every initial state and every node, the trajectory with that node's state flipped after the
+     * given number of updates. This multiplies the work by the number of nodes plus one.
+     * @param step number of updates before the perturbation, 0 perturbing the initial state itself
+     * @return this objective
+     */
+    public RobustnessObjective perturbations(int step) {
+        if (step < 0 || step >= Math.max(1, desired.length)) {
+            throw new IllegalArgumentException("Perturbation step must be within the desired trace");
+        }
+        this.perturbStep = step;
+        return this;
+    }
+
+    /**
+     * Sets the pool batches are run on. Defaults to the common ForkJoin pool.
+     * @param pool pool to run batches on
+     * @return this objective
+     */
+    public RobustnessObjective pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * @return number of trajectories scored per candidate
+     */
+    public long trajectories() {
+        return perturbStep < 0 ? states : states * (size + 1);
+    }
+
+    @Override
+    public int score(MoveJournal move) {
+        return score(move, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int score(MoveJournal move, int bound) {
+        return (int) Math.min(Integer.MAX_VALUE, score(move.compiled(), bound));
+    }
+
+    @Override
+    public boolean bounded() {
+        return true;
+    }
+
+    /**
+     * Scores a network. Node states are not used or modified.
+     * @param network network to score
+     * @param bound score at which scoring may stop, Long.MAX_VALUE to always finish
+     * @return total Hamming distance over every trajectory, or a partial total of at least bound if scoring stopped
+     *         early
+     */
+    public long score(TreeMap<String, BNNode> network, long bound) {
+        return score(CompiledNetwork.compile(network), bound);
+    }
+
+    /**
+     * Scores a compiled network. Its state is not used or modified.
+     * @param network compiled network to score
+     * @param bound score at which scoring may stop, Long.MAX_VALUE to always finish
+     * @return total Hamming distance over every trajectory, or a partial total of at least bound if scoring stopped
+     *         early
+     */
+    public long score(CompiledNetwork network, long bound) {
+        long plain = (states + BitParallelRun.LANES - 1) / BitParallelRun.LANES;
+        long perState = (size + BitParallelRun.LANES - 1) / BitParallelRun.LANES;
+        long items = plain + (perturbStep < 0 ? 0 : states * perState);
+
+        long tasks = Math.min(items, (long) pool.getParallelism() * 4);
+        AtomicLong total = new AtomicLong();
+        List<Callable<Void>> work = new ArrayList<>();
+        for (long task = 0; task < tasks; task++) {
+            long first = items * task / tasks;
+            long last = items * (task + 1) / tasks;
+            work.add(() -> {
+                BitParallelRun run = new BitParallelRun(network);
+                long[] lanes = new long[size];
+                for (long item = first; item < last && total.get() < bound; item++) {
+                    total.addAndGet(item < plain
+                            ? batch(run, lanes, item)
+                            : perturbed(run, lanes, (item - plain) / perState, (item - plain) % perState));
+                }
+                return null;
+            });
+        }
+        for (Future<Void> task : pool.invokeAll(work)) {
+            try {
+                task.get();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return total.get();
+    }
+
+    /**
+     * Scores a batch of up to 64 initial states
+     */
+    private long batch(BitParallelRun run, long[] lanes, long batch) {
+        long active;
+        if (batches != null) {
+            System.arraycopy(batches[(int) batch], 0, lanes, 0, size);
+            long count = Math.min(BitParallelRun.LANES, states - batch * BitParallelRun.LANES);
+            active = count == BitParallelRun.LANES ? -1L : (1L << count) - 1;
+        } else {
+            for (int node = 0; node < size; node++) {
+                lanes[node] = node < 6 ? LOW_BITS[node] : ((batch >>> (node - 6)) & 1) == 0 ? 0 : -1L;
+            }
+            active = states >= BitParallelRun.LANES ? -1L : (1L << states) - 1;
+        }
+
+        run.load(lanes, active);
+        return simulate(run, -1, 0);
+    }
+
+    /**
+     * Scores the perturbations of a block of up to 64 nodes from one initial state, lane l flipping node first + l
+     */
+    private long perturbed(BitParallelRun run, long[] lanes, long state, long block) {
+        for (int node = 0; node < size; node++) lanes[node] = initialState(state, node) ? -1L : 0L;
+
+        int first = (int) (block * BitParallelRun.LANES);
+        int count = Math.min(BitParallelRun.LANES, size - first);
+        run.load(lanes, count == BitParallelRun.LANES ? -1L : (1L << count) - 1);
+        return simulate(run, first, count);
+    }
+
+    private boolean initialState(long state, int node) {
+        if (batches == null) return ((state >>> node) & 1) != 0;
+        return ((batches[(int) (state / BitParallelRun.LANES)][node] >>> (state % BitParallelRun.LANES)) & 1) != 0;
+    }
+
+    /**
+     * Steps the loaded lanes through the desired trace, flipping nodes first to first + count - 1 (one per lane) after
+     * perturbStep updates, and counts mismatches in the active lanes
+     */
+    private long simulate(BitParallelRun run, int first, int count) {
+        long active = run.active();
+        long dist = 0;
+        for (int step = 0; step < desired.length; step++) {
+            if (step == perturbStep) {
+                for (int lane = 0; lane < count; lane++) run.flip(first + lane, 1L << lane);
+            }
+            run.step();
+            for (int node = 0; node < desired[step].length; node++) {
+                long lane = run.lane(node);
+                dist += Long.bitCount((desired[step][node] ? ~lane : lane) & active);
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Lays out initial states given as maps one word per node per batch of 64
+     */
+    private static long[][] layOut(TreeMap<String, BNNode> network, List<Map<String, Boolean>> initialStates) {
+        CompiledNetwork compiled = CompiledNetwork.compile(network);
+        BitParallelRun run = new BitParallelRun(compiled);
+        long[][] batches = new long[(initialStates.size() + BitParallelRun.LANES - 1) / BitParallelRun.LANES][];
+        for (int batch = 0; batch < batches.length; batch++) {
+            run.load(initialStates, batch * BitParallelRun.LANES);
+            batches[batch] = new long[network.size()];
+            for (int node = 0; node < network.size(); node++) batches[batch][node] = run.lane(node) & run.active();
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,121 @@
+package simAnneal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads binary run logs written by RunRecorder, either replaying every record or summarising the run. The log is
+ * memory-mapped and read in place.
+ */
+public class RunLog {
+    private static final long MAP_WINDOW = (1L << 30) / RunRecorder.RECORD_BYTES * RunRecorder.RECORD_BYTES;
+
+    /**
+     * Receives the records of a log in order
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void record(int iteration, double temperature, int candScore, int delta, boolean accepted, int move,
+                    int edits);
+    }
+
+    /**
+     * Summary of an annealing run
+     */
+    public static class Summary implements Listener {
+        public long records; //Number of iterations recorded
+        public long accepted; //Number of candidates accepted
+        public long acceptedWorse; //Number of worse candidates accepted
+        public long rejectedWorse; //Number of worse candidates rejected
+        public int bestScore = Integer.MAX_VALUE; //Lowest candidate score seen
+        public int bestIteration = -1; //Iteration of the lowest candidate score
+        public double firstTemp = Double.NaN; //Temperature of the first recorded iteration
+        public double lastTemp = Double.NaN; //Temperature of the last recorded iteration
+        public long rowsFlipped; //Total truth table rows flipped by moves
+        public long wiringEdits; //Total inputs rewired, added or removed by moves
+
+        @Override
+        public void record(int iteration, double temperature, int candScore, int delta, boolean accepted, int move,
+                           int edits) {
+            if (records++ == 0) firstTemp = temperature;
+            rowsFlipped += move;
+            wiringEdits += edits;
+            lastTemp = temperature;
+            if (accepted) this.accepted++;
+            if (delta > 0) {
+                if (accepted) acceptedWorse++;
+                else rejectedWorse++;
+            }
+            if (candScore < bestScore) {
+                bestScore = candScore;
+                bestIteration = iteration;
+            }
+        }
+
+        /**
+         * @return fraction of candidates accepted
+         */
+        public double acceptanceRatio() {
+            return records == 0 ? 0 : accepted / (double) records;
+        }
+
+        @Override
+        public String toString() {
+            return "records " + records + " ; accepted " + accepted + " (" + acceptedWorse + " worse) ; rejected worse "
+                    + rejectedWorse + " ; best " + bestScore + " at " + bestIteration + " ; temperature " + firstTemp
+                    + " -> " + lastTemp + " ; rows flipped " + rowsFlipped + " ; wiring edits " + wiringEdits;
+        }
+    }
+
+    /**
+     * Replays every record of a log in order
+     * @param path log file to read
+     * @param listener receives each record
+     */
+    public static void replay(Path path, Listener listener) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, RunRecorder.HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != RunRecorder.MAGIC) throw new RuntimeException(path + " is not a run log");
+            int version = header.getInt();
+            if (version != RunRecorder.VERSION) throw new RuntimeException("Unsupported run log version " + version);
+            int recordBytes = header.getInt();
+
+            long end = RunRecorder.HEADER_BYTES + (channel.size() - RunRecorder.HEADER_BYTES) / recordBytes * recordBytes;
+            for (long offset = RunRecorder.HEADER_BYTES; offset < end; offset += MAP_WINDOW) {
+                ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW, end - offset))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                while (records.hasRemaining()) {
+                    int position = records.position();
+                    int iteration = records.getInt();
+                    int candScore = records.getInt();
+                    int delta = records.getInt();
+                    int move = records.getInt();
+                    double temperature = records.getDouble();
+                    boolean accepted = (records.getInt() & 1) != 0;
+                    int edits = records.getInt();
+                    records.position(position + recordBytes);
+
+                    listener.record(iteration, temperature, candScore, delta, accepted, move, edits);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Summarises a log
+     * @param path log file to read
+     * @return summary of the run
+     */
+    public static Summary summarise(Path path) {
+        Summary summary = new Summary();
+        replay(path, summary);
+        return summary;
+    }
+}
@@ -0,0 +1,255 @@
+package simAnneal;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Low-overhead instrumentation of an annealing run: move rate, time spent generating and scoring candidates, a
+ * histogram of score latency, acceptance counts and acceptance ratio per temperature band. Optionally emits the JFR
+ * events in AnnealEvents around neighbour generation, scoring and acceptance.
+ * <p>
+ * Metrics are switched on per run by passing an instance to Annealer.metrics; a run without metrics pays only a null
+ * check per hook. An instance is not thread safe and should be used by one run at a time.
+ */
+public class RunMetrics {
+    public static final int MIN_BAND = -6; //Temperature band of all temperatures below 1e-6
+    public static final int MAX_BAND = 6; //Temperature band of all temperatures of 1e5 and above
+
+    private final boolean events; //Whether JFR events are emitted
+
+    //Counters
+    public long moves; //Candidates generated
+    public long accepted; //Candidates accepted
+    public long acceptedBetter; //Improving candidates accepted
+    public long acceptedWorse; //Worse candidates accepted
+    public long rejectedWorse; //Worse candidates rejected
+    public long rejectedEqual; //Candidates with an equal score, which are always rejected
+    public long moveNanos; //Total time spent generating candidates
+    public long scoreNanos; //Total time spent scoring candidates
+    public long rowsFlipped; //Total truth table rows flipped by moves
+    public long wiringEdits; //Total inputs rewired, added or removed by moves
+    private long startNanos = -1; //Time of the first move
+
+    //Histogram of score latency, bucket b counting latencies in [2^b, 2^(b+1)) nanoseconds
+    private final long[] scoreLatency = new long[64];
+
+    //Candidates and acceptances per temperature band, band b holding temperatures in [10^(b-1), 10^b) apart from the
+    //open-ended MIN_BAND and MAX_BAND
+    private final long[] bandMoves = new long[MAX_BAND - MIN_BAND + 1];
+    private final long[] bandAccepted = new long[MAX_BAND - MIN_BAND + 1];
+
+    //Per iteration state
+    private long mark;
+    private AnnealEvents.NeighbourGen moveEvent;
+    private AnnealEvents.Score scoreEvent;
+
+    //Periodic reporting
+    private Consumer<RunMetrics> reporter;
+    private int reportInterval;
+    private int sinceReport;
+
+    /**
+     * Creates metrics that only count, without emitting JFR events
+     */
+    public RunMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param events whether to emit JFR events, which are recorded when a JFR recording with them enabled is running
+     */
+    public RunMetrics(boolean events) {
+        this.events = events;
+    }
+
+    /**
+     * Passes these metrics to a reporter every given number of iterations, for example to print progress
+     * @param interval number of iterations between reports
+     * @param reporter receives these metrics
+     * @return these metrics
+     */
+    public RunMetrics reportEvery(int interval, Consumer<RunMetrics> reporter) {
+        this.reportInterval = interval;
+        this.reporter = reporter;
+        return this;
+    }
+
+    /**
+     * Called before a candidate is generated
+     */
+    void beginMove(int iteration) {
+        if (events) {
+            moveEvent = new AnnealEvents.NeighbourGen();
+            moveEvent.iteration = iteration;
+            moveEvent.begin();
+        }
+        mark = System.nanoTime();
+        if (startNanos < 0) startNanos = mark;
+    }
+
+    /**
+     * Called after a candidate is generated and before it is scored
+     */
+    void endMove(int iteration, int moveSize, int edits) {
+        long now = System.nanoTime();
+        moveNanos += now - mark;
+        moves++;
+        rowsFlipped += moveSize;
+        wiringEdits += edits;
+        mark = now;
+
+        if (events) {
+            moveEvent.moveSize = moveSize;
+            moveEvent.edits = edits;
+            moveEvent.commit();
+            moveEvent = null;
+
+            scoreEvent = new AnnealEvents.Score();
+            scoreEvent.iteration = iteration;
+            scoreEvent.begin();
+        }
+    }
+
+    /**
+     * Called after a candidate is scored
+     */
+    void endScore(int score) {
+        long latency = System.nanoTime() - mark;
+        scoreNanos += latency;
+        scoreLatency[63 - Long.numberOfLeadingZeros(Math.max(1, latency))]++;
+
+        if (events) {
+            scoreEvent.score = score;
+            scoreEvent.commit();
+            scoreEvent = null;
+        }
+    }
+
+    /**
+     * Called after the acceptance test of a candidate
+     */
+    void acceptance(int iteration, double temperature, int delta, boolean accept) {
+        int band = band(temperature) - MIN_BAND;
+        bandMoves[band]++;
+        if (accept) {
+            accepted++;
+            bandAccepted[band]++;
+            if (delta < 0) acceptedBetter++;
+            else acceptedWorse++;
+        } else if (delta > 0) {
+            rejectedWorse++;
+        } else {
+            rejectedEqual++;
+        }
+
+        if (events) {
+            AnnealEvents.Acceptance event = new AnnealEvents.Acceptance();
+            if (event.shouldCommit()) {
+                event.iteration = iteration;
+                event.temperature = temperature;
+                event.delta = delta;
+                event.accepted = accept;
+                event.commit();
+            }
+        }
+
+        if (reporter != null && ++sinceReport >= reportInterval) {
+            sinceReport = 0;
+            reporter.accept(this);
+        }
+    }
+
+    /**
+     * @param temperature temperature
+     * @return temperature band, the power of ten above the temperature clamped to [MIN_BAND, MAX_BAND]
+     */
+    public static int band(double temperature) {
+        if (!(temperature > 0)) return MIN_BAND;
+        int band = (int) Math.floor(Math.log10(temperature)) + 1;
+        return Math.max(MIN_BAND, Math.min(MAX_BAND, band));
+    }
+
+    /**
+     * @return candidates generated per second since the first move
+     */
+    public double movesPerSecond() {
+        return startNanos < 0 ? 0 : moves / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * @return fraction of candidates accepted
+     */
+    public double acceptanceRatio() {
+        return moves == 0 ? 0 : accepted / (double) moves;
+    }
+
+    /**
+     * @param band temperature band, see band(double)
+     * @return fraction of candidates accepted in that band, or NaN if no candidates were generated in it
+     */
+    public double acceptanceRatio(int band) {
+        int index = band - MIN_BAND;
+        return bandMoves[index] == 0 ? Double.NaN : bandAccepted[index] / (double) bandMoves[index];
+    }
+
+    /**
+     * @return mean score latency in nanoseconds
+     */
+    public double meanScoreNanos() {
+        return moves == 0 ? 0 : scoreNanos / (double) moves;
+    }
+
+    /**
+     * Estimates a percentile of score latency from the histogram, to within a factor of two
+     * @param percentile percentile between 0 and 100
+     * @return upper bound of the histogram bucket holding the percentile, in nanoseconds
+     */
+    public long scoreNanosPercentile(double percentile) {
+        long total = 0;
+        for (long count : scoreLatency) total += count;
+        long target = (long) Math.ceil(total * percentile / 100);
+
+        long seen = 0;
+        for (int bucket = 0; bucket < scoreLatency.length; bucket++) {
+            seen += scoreLatency[bucket];
+            if (seen >= target && seen > 0) return (2L << bucket) - 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Clears all counters
+     */
+    public void reset() {
+        moves = accepted = acceptedBetter = acceptedWorse = rejectedWorse = rejectedEqual = 0;
+        moveNanos = scoreNanos = rowsFlipped = wiringEdits = 0;
+        startNanos = -1;
+        sinceReport = 0;
+        Arrays.fill(scoreLatency, 0);
+        Arrays.fill(bandMoves, 0);
+        Arrays.fill(bandAccepted, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        output.append(String.format("moves %d (%.0f/s) ; accepted %d (%.3f) ; better %d ; worse accepted %d ; "
+                        + "worse rejected %d ; equal rejected %d%n",
+                moves, movesPerSecond(), accepted, acceptanceRatio(), acceptedBetter, acceptedWorse, rejectedWorse,
+                rejectedEqual));
+        output.append(String.format("move time %.3f ms ; score time %.3f ms ; score mean %.0f ns, p50 < %d ns, "
+                        + "p99 < %d ns%n",
+                moveNanos / 1e6, scoreNanos / 1e6, meanScoreNanos(), scoreNanosPercentile(50),
+                scoreNanosPercentile(99)));
+        for (int band = MIN_BAND; band <= MAX_BAND; band++) {
+            int index = band - MIN_BAND;
+            if (bandMoves[index] == 0) continue;
+            String range = band == MIN_BAND ? String.format("T < 1e%d", band)
+                    : band == MAX_BAND ? String.format("T >= 1e%d", band - 1)
+                    : String.format("1e%d <= T < 1e%d", band - 1, band);
+            output.append(String.format("%s : %d moves, acceptance %.3f%n", range, bandMoves[index],
+                    acceptanceRatio(band)));
+        }
+        return output.toString();
+    }
+}
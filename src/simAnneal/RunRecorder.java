@@ -0,0 +1,114 @@
+package simAnneal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams per-iteration records of an annealing run to a compact binary log. Records are fixed size and packed into a
+ * direct buffer, which is written out whenever it fills and after every flushInterval records, so the cost per
+ * iteration is a handful of buffer puts. Logs are read back with RunLog.
+ * <p>
+ * The file is a 16 byte header (int magic 'B' 'N' 'S' 'R', int version, int record size, int reserved) followed by
+ * little-endian records of:
+ * <pre>
+ * int    iteration
+ * int    candidate score
+ * int    delta (candidate score - current score)
+ * int    move descriptor (number of truth table rows flipped)
+ * double temperature
+ * int    flags (bit 0 set if the candidate was accepted)
+ * int    wiring edits (number of inputs rewired, added or removed)
+ * </pre>
+ * The wiring edits field was reserved and always 0 before wiring moves were added, which reads correctly as no edits.
+ */
+public class RunRecorder implements AutoCloseable {
+    public static final int MAGIC = 0x52534E42; //"BNSR" when read as little-endian bytes
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 32;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int flushInterval;
+    private int sinceFlush;
+
+    /**
+     * Creates a recorder that writes to a file, replacing it if it exists
+     * @param path log file to write
+     * @param bufferRecords number of records held in memory between writes
+     * @param flushInterval number of records after which buffered records are written out, even if the buffer is not full
+     */
+    public RunRecorder(Path path, int bufferRecords, int flushInterval) {
+        this.buffer = ByteBuffer.allocateDirect(bufferRecords * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.flushInterval = flushInterval;
+
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+            while (header.hasRemaining()) channel.write(header);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a recorder buffering 4096 records and flushing at least every 65536 records
+     * @param path log file to write
+     */
+    public RunRecorder(Path path) {
+        this(path, 4096, 65536);
+    }
+
+    /**
+     * Records one iteration
+     * @param iteration iteration number
+     * @param temperature temperature of the iteration
+     * @param candScore score of the candidate
+     * @param delta candidate score minus current score
+     * @param accepted whether the candidate was accepted
+     * @param move move descriptor
+     * @param edits number of wiring edits made by the move
+     */
+    public void record(int iteration, double temperature, int candScore, int delta, boolean accepted, int move,
+                       int edits) {
+        if (!buffer.hasRemaining()) flush();
+
+        buffer.putInt(iteration).putInt(candScore).putInt(delta).putInt(move)
+                .putDouble(temperature).putInt(accepted ? 1 : 0).putInt(edits);
+
+        if (++sinceFlush >= flushInterval) flush();
+    }
+
+    /**
+     * Writes all buffered records to the file
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.clear();
+        sinceFlush = 0;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
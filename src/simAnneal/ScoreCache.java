@@ -0,0 +1,158 @@
+package simAnneal;
+
+import bnsim.generator.NetworkGen;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of candidate scores keyed by a network's Zobrist hash (see ZobristHash and MoveJournal.hash). Entries
+ * are held in a fixed array of slots and evicted with the CLOCK algorithm: a hit sets a slot's reference bit, and the
+ * clock hand clears reference bits until it finds a slot without one to reuse. Slots are found through an open
+ * addressing index, so lookups and inserts do not allocate.
+ * <p>
+ * A cache belongs to a single objective: the scores it holds are only valid for the objective, desired trace and
+ * initial state they were computed with.
+ */
+public class ScoreCache {
+    public static final int MISS = Integer.MIN_VALUE; //Returned by get when a key is not cached
+
+    private final long[] keys; //Key held in each slot
+    private final int[] scores; //Score held in each slot
+    private final boolean[] referenced; //CLOCK reference bit of each slot
+    private final int[] index; //Open addressing index of slot + 1 by key, 0 marking an empty position
+    private final int mask; //index.length - 1
+    private int used; //Number of slots in use
+    private int hand; //CLOCK hand
+
+    public long hits;
+    public long misses;
+    public long evictions;
+
+    /**
+     * @param capacity maximum number of cached scores
+     */
+    public ScoreCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        this.keys = new long[capacity];
+        this.scores = new int[capacity];
+        this.referenced = new boolean[capacity];
+
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity - 1)) << 2; //Keeps the index at most half full
+        this.index = new int[indexSize];
+        this.mask = indexSize - 1;
+    }
+
+    /**
+     * @param key network hash
+     * @return cached score, or MISS if the key is not cached
+     */
+    public int get(long key) {
+        for (int position = home(key); index[position] != 0; position = (position + 1) & mask) {
+            int slot = index[position] - 1;
+            if (keys[slot] == key) {
+                referenced[slot] = true;
+                hits++;
+                return scores[slot];
+            }
+        }
+        misses++;
+        return MISS;
+    }
+
+    /**
+     * Caches a score, evicting an entry if the cache is full
+     * @param key network hash
+     * @param score score of the network
+     */
+    public void put(long key, int score) {
+        int position = home(key);
+        for (; index[position] != 0; position = (position + 1) & mask) {
+            int slot = index[position] - 1;
+            if (keys[slot] == key) {
+                scores[slot] = score;
+                referenced[slot] = true;
+                return;
+            }
+        }
+
+        int slot;
+        if (used < keys.length) {
+            slot = used++;
+        } else {
+            slot = evict();
+            //Eviction may have shifted entries, so find the insert position again
+            position = home(key);
+            while (index[position] != 0) position = (position + 1) & mask;
+        }
+
+        keys[slot] = key;
+        scores[slot] = score;
+        referenced[slot] = false;
+        index[position] = slot + 1;
+    }
+
+    /**
+     * Advances the clock hand to a slot without its reference bit, removes its entry from the index and returns it
+     */
+    private int evict() {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % keys.length;
+        }
+        int slot = hand;
+        hand = (hand + 1) % keys.length;
+        evictions++;
+
+        int position = home(keys[slot]);
+        while (index[position] != slot + 1) position = (position + 1) & mask;
+
+        //Backward shift deletion keeps every remaining entry reachable from its home position
+        int gap = position;
+        for (int next = (gap + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[index[next] - 1]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                index[gap] = index[next];
+                gap = next;
+            }
+        }
+        index[gap] = 0;
+
+        return slot;
+    }
+
+    private int home(long key) {
+        return (int) NetworkGen.mix64(key) & mask;
+    }
+
+    /**
+     * @return number of cached scores
+     */
+    public int size() {
+        return used;
+    }
+
+    /**
+     * @return fraction of lookups that were hits
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    /**
+     * Removes every entry and clears the statistics
+     */
+    public void clear() {
+        Arrays.fill(index, 0);
+        Arrays.fill(referenced, false);
+        used = 0;
+        hand = 0;
+        hits = misses = evictions = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "size " + used + "/" + keys.length + " ; hits " + hits + " ; misses " + misses + " ; evictions "
+                + evictions + " ; hit ratio " + hitRatio();
+    }
+}
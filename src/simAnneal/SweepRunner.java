@@ -0,0 +1,352 @@
+package simAnneal;
+
+import bnsim.generator.NetworkGen;
+import bnsim.nodes.BNNode;
+import bnsim.process.RunNetwork;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a grid of annealing parameter settings, each repeated a number of times, on a work-stealing pool. Every
+ * finished run is appended to a CSV file and flushed straight away, and the file doubles as the sweep's checkpoint: a
+ * sweep restarted with the same config skips every run already in it, so an interrupted sweep only loses the runs that
+ * were in progress.
+ * <p>
+ * The config is a properties file. Keys holding a list take whitespace separated values, and the grid is every
+ * combination of them:
+ * <pre>
+ * network      = path of the starting network, text (NetworkGen.fileInput) or binary (.bnb)
+ * trace        = desired trace, e.g. 1111111,0000000,1111111
+ * objective    = trace or attractor, defaults to trace
+ * schedule     = list of exponential:factor, lundy:factor, linear[:endTemp], target:ratio:window:factor,
+ *                lam[:factor] (factor defaults to 0.999) or variance:lambda:window
+ * startingTemp = list of starting temperatures, or auto[:acceptance] to calibrate one per run with
+ *                TemperatureCalibration for an initial acceptance probability (default 0.8)
+ * move         = list of nodes:nodes:rows, fixed:rows:truthsMax, random:upper:truthsMax,
+ *                gaussian:totalTruths:median:stddev:truthsMax, rewire:edges, addInput:maxInputs or
+ *                removeInput:minInputs, or several of these joined by + to choose one of them at random each move
+ * iterations   = list of iteration limits
+ * repeats      = runs of each grid cell, defaults to 1
+ * seed         = seed every run's seed is derived from, defaults to 0
+ * threads      = pool size, defaults to the number of processors
+ * output       = CSV file results are appended to
+ * </pre>
+ * A run's id is its position in the grid, and its seed depends only on the sweep seed and its id, so a resumed sweep
+ * gives the same results as one that was never interrupted.
+ */
+public class SweepRunner {
+    static final String HEADER = "run,schedule,startingTemp,move,iterations,repeat,seed,startingScore,bestScore,"
+            + "finalScore,accepted,iterationsRun,millis";
+
+    private final TreeMap<String, BNNode> network;
+    private final String trace;
+    private final String objective;
+    private final List<String> schedules;
+    private final List<String> startingTemps;
+    private final List<String> moves;
+    private final List<String> iterations;
+    private final int repeats;
+    private final long seed;
+    private final int threads;
+    private final Path output;
+
+    /**
+     * A single run of the sweep
+     */
+    private class Run implements Callable<Void> {
+        final int id;
+        final String schedule;
+        final String startingTemp;
+        final String move;
+        final int iterations;
+        final int repeat;
+        final long seed;
+        final Writer out;
+
+        Run(int id, String schedule, String startingTemp, String move, int iterations, int repeat, long seed,
+            Writer out) {
+            this.id = id;
+            this.schedule = schedule;
+            this.startingTemp = startingTemp;
+            this.move = move;
+            this.iterations = iterations;
+            this.repeat = repeat;
+            this.seed = seed;
+            this.out = out;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            long start = System.nanoTime();
+            Map<String, Boolean> initialState = RunNetwork.iterateMap(Utility.copyNetwork(network), 0);
+            ObjectiveFunction function = objective.equals("attractor")
+                    ? ObjectiveFunction.attractor(trace, initialState)
+                    : ObjectiveFunction.trace(trace, initialState);
+
+            MoveGenerator moves = move(move);
+            double temp = startingTemp(startingTemp, moves, function);
+
+            Annealer.Result result = new Annealer(schedule(schedule, temp, iterations), moves, function)
+                    .startingTemp(temp)
+                    .maxIterations(iterations)
+                    .random(new Rng(seed))
+                    .run(network);
+
+            String line = id + "," + schedule + "," + temp + "," + move + "," + iterations + "," + repeat + ","
+                    + seed + "," + result.startingScore + "," + result.bestScore + "," + result.finalScore + ","
+                    + result.accepted + "," + result.iterations + "," + (System.nanoTime() - start) / 1_000_000;
+            synchronized (out) {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            }
+            return null;
+        }
+
+        /**
+         * Resolves a starting temperature value, calibrating it from the starting network if it is auto. The
+         * calibration is seeded from the run's seed so a resumed sweep picks the same temperature.
+         */
+        private double startingTemp(String spec, MoveGenerator moves, ObjectiveFunction function) {
+            if (!spec.startsWith("auto")) return Double.parseDouble(spec);
+            String[] parts = spec.split(":");
+            return new TemperatureCalibration(moves, function)
+                    .initialAcceptance(parts.length > 1 ? Double.parseDouble(parts[1]) : 0.8)
+                    .seed(NetworkGen.mix64(seed))
+                    .calibrate(network)
+                    .startingTemp;
+        }
+    }
+
+    /**
+     * @param config sweep configuration, see the class description for its keys
+     */
+    public SweepRunner(Properties config) {
+        String networkPath = required(config, "network");
+        this.network = networkPath.endsWith(".bnb")
+                ? NetworkGen.binaryInput(networkPath)
+                : NetworkGen.fileInput(networkPath);
+        this.trace = required(config, "trace");
+        this.objective = config.getProperty("objective", "trace").trim();
+        if (!objective.equals("trace") && !objective.equals("attractor")) {
+            throw new IllegalArgumentException("Unknown objective " + objective);
+        }
+        this.schedules = list(config, "schedule");
+        this.startingTemps = list(config, "startingTemp");
+        this.moves = list(config, "move");
+        this.iterations = list(config, "iterations");
+        this.repeats = Integer.parseInt(config.getProperty("repeats", "1").trim());
+        this.seed = Long.parseLong(config.getProperty("seed", "0").trim());
+        this.threads = Integer.parseInt(config.getProperty("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+        this.output = Paths.get(required(config, "output"));
+
+        //Parse every grid value up front so a typo fails the sweep before any run starts
+        for (String schedule : schedules) schedule(schedule, 1, 1);
+        for (String move : moves) move(move);
+        for (String temp : startingTemps) {
+            if (temp.equals("auto")) continue;
+            if (!temp.startsWith("auto:")) {
+                Double.parseDouble(temp);
+                continue;
+            }
+            double acceptance = Double.parseDouble(temp.substring(5));
+            if (acceptance <= 0 || acceptance >= 1) {
+                throw new IllegalArgumentException("Acceptance probability must be between 0 and 1: " + temp);
+            }
+        }
+        for (String limit : iterations) Integer.parseInt(limit);
+    }
+
+    /**
+     * @param config path of a sweep configuration file
+     * @return sweep runner for the configuration
+     */
+    public static SweepRunner load(Path config) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(config, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new SweepRunner(properties);
+    }
+
+    /**
+     * @return total number of runs in the sweep
+     */
+    public int runs() {
+        return schedules.size() * startingTemps.size() * moves.size() * iterations.size() * repeats;
+    }
+
+    /**
+     * Runs every run of the sweep not already in the output file, appending each result as it finishes
+     * @return number of runs made
+     */
+    public int run() {
+        Set<Integer> done = resume();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            if (done.isEmpty() && Files.size(output) == 0) {
+                out.write(HEADER);
+                out.write('\n');
+                out.flush();
+            }
+
+            List<Run> todo = new ArrayList<>();
+            int id = 0;
+            for (String schedule : schedules) {
+                for (String temp : startingTemps) {
+                    for (String move : moves) {
+                        for (String limit : iterations) {
+                            for (int repeat = 0; repeat < repeats; repeat++, id++) {
+                                if (done.contains(id)) continue;
+                                todo.add(new Run(id, schedule, temp, move,
+                                        Integer.parseInt(limit), repeat, runSeed(id), out));
+                            }
+                        }
+                    }
+                }
+            }
+
+            pool.invokeAll(todo).forEach(task -> {
+                try {
+                    task.get();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            return todo.size();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads the ids of finished runs from the output file. A line cut short by a crash is removed so that appending
+     * starts on a fresh line.
+     */
+    private Set<Integer> resume() {
+        Set<Integer> done = new HashSet<>();
+        if (!Files.exists(output)) return done;
+
+        try {
+            byte[] contents = Files.readAllBytes(output);
+            int end = contents.length;
+            while (end > 0 && contents[end - 1] != '\n') end--;
+            if (end < contents.length) {
+                try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                }
+            }
+
+            int columns = HEADER.split(",").length;
+            for (String line : new String(contents, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                if (line.isEmpty() || line.equals(HEADER)) continue;
+                String[] fields = line.split(",");
+                if (fields.length == columns) done.add(Integer.parseInt(fields[0]));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return done;
+    }
+
+    private long runSeed(int id) {
+        return NetworkGen.mix64(seed + NetworkGen.mix64(id));
+    }
+
+    static CoolingSchedule schedule(String spec, double startingTemp, int iterations) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "exponential":
+                return CoolingSchedule.exponential(Double.parseDouble(parts[1]));
+            case "lundy":
+                return CoolingSchedule.lundy(Double.parseDouble(parts[1]));
+            case "linear":
+                double endTemp = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
+                return CoolingSchedule.linear(startingTemp, endTemp, iterations);
+            case "target":
+                return CoolingSchedule.targetAcceptance(Double.parseDouble(parts[1]), Integer.parseInt(parts[2]),
+                        Double.parseDouble(parts[3]));
+            case "lam":
+                double factor = parts.length > 1 ? Double.parseDouble(parts[1]) : 0.999;
+                return CoolingSchedule.lam(iterations, factor);
+            case "variance":
+                return CoolingSchedule.variance(Double.parseDouble(parts[1]), Integer.parseInt(parts[2]));
+            default:
+                throw new IllegalArgumentException("Unknown cooling schedule " + spec);
+        }
+    }
+
+    static MoveGenerator move(String spec) {
+        if (spec.contains("+")) {
+            String[] specs = spec.split("\\+");
+            MoveGenerator[] moves = new MoveGenerator[specs.length];
+            double[] weights = new double[specs.length];
+            for (int i = 0; i < specs.length; i++) {
+                moves[i] = move(specs[i]);
+                weights[i] = 1;
+            }
+            return MoveGenerator.oneOf(weights, moves);
+        }
+
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "nodes":
+                return MoveGenerator.nodes(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            case "fixed":
+                return MoveGenerator.fixed(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            case "random":
+                return MoveGenerator.random(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            case "gaussian":
+                return MoveGenerator.gaussian(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                        Double.parseDouble(parts[3]), Integer.parseInt(parts[4]));
+            case "rewire":
+                return MoveGenerator.rewire(Integer.parseInt(parts[1]));
+            case "addInput":
+                return MoveGenerator.addInput(Integer.parseInt(parts[1]));
+            case "removeInput":
+                return MoveGenerator.removeInput(Integer.parseInt(parts[1]));
+            default:
+                throw new IllegalArgumentException("Unknown move " + spec);
+        }
+    }
+
+    private static String required(Properties config, String key) {
+        String value = config.getProperty(key);
+        if (value == null || value.isBlank()) throw new IllegalArgumentException("Sweep config is missing " + key);
+        return value.trim();
+    }
+
+    private static List<String> list(Properties config, String key) {
+        return List.of(required(config, key).split("\\s+"));
+    }
+
+    /**
+     * Runs or resumes a sweep
+     * @param args path of the sweep configuration file
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: SweepRunner <config file>");
+            return;
+        }
+        SweepRunner sweep = SweepRunner.load(Paths.get(args[0]));
+        int made = sweep.run();
+        System.out.println("Made " + made + " of " + sweep.runs() + " runs");
+    }
+}
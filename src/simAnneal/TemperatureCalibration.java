@@ -0,0 +1,244 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static simAnneal.Utility.copyNetwork;
+
+/**
+ * Picks annealing temperatures for a network, move and objective by sampling the score landscape around the starting
+ * network, instead of hand tuning a starting temperature. Random moves are applied to copies of the starting network
+ * in parallel and the increases in score they cause are collected. The starting temperature is then the one at which
+ * the average chance of accepting those increases, exp(-delta / T), matches a target (following Ben-Ameur 2004, which
+ * is more accurate than -mean(delta) / ln(target) as it does not assume every increase is the same size). The final
+ * temperature is the one at which even the smallest increase is accepted with a small target probability.
+ * <p>
+ * The objective is called from several threads at once, so it must be stateless, as for ParallelTempering. Results
+ * depend only on the seed, not on the size of the pool.
+ */
+public class TemperatureCalibration {
+    private static final int TASK_SAMPLES = 256; //Samples per task, fixed so results do not depend on the pool size
+    private final MoveGenerator move;
+    private final ObjectiveFunction objective;
+    private int samples = 2000;
+    private double initialAcceptance = 0.8;
+    private double finalAcceptance = 0.001;
+    private long seed = 0;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Temperatures chosen by a calibration, with the statistics they were chosen from
+     */
+    public static class Result {
+        public final double startingTemp; //Temperature at which worse candidates are accepted with the target probability
+        public final double finalTemp; //Temperature at which the smallest increase is accepted with the final probability
+        public final int samples; //Number of moves sampled
+        public final int increases; //Number of sampled moves that made the score worse
+        public final int unchanged; //Number of sampled moves that left the score unchanged
+        public final double meanIncrease; //Mean increase in score over the moves that made it worse
+        public final int smallestIncrease; //Smallest increase in score
+
+        Result(double startingTemp, double finalTemp, int samples, int increases, int unchanged, double meanIncrease,
+               int smallestIncrease) {
+            this.startingTemp = startingTemp;
+            this.finalTemp = finalTemp;
+            this.samples = samples;
+            this.increases = increases;
+            this.unchanged = unchanged;
+            this.meanIncrease = meanIncrease;
+            this.smallestIncrease = smallestIncrease;
+        }
+
+        /**
+         * @param iterations iteration budget
+         * @return cooling factor that takes a geometric (CoolingSchedule.exponential) schedule from the starting to the
+         *         final temperature in the given number of iterations
+         */
+        public double coolingFactor(int iterations) {
+            return Math.pow(finalTemp / startingTemp, 1.0 / iterations);
+        }
+
+        /**
+         * @param coolingFactor factor of a geometric (CoolingSchedule.exponential) schedule
+         * @return number of iterations the schedule takes to cool from the starting to the final temperature
+         */
+        public int iterations(double coolingFactor) {
+            return (int) Math.ceil(Math.log(finalTemp / startingTemp) / Math.log(coolingFactor));
+        }
+
+        @Override
+        public String toString() {
+            return "starting temp " + startingTemp + " ; final temp " + finalTemp + " ; samples " + samples
+                    + " ; increases " + increases + " ; unchanged " + unchanged + " ; mean increase " + meanIncrease
+                    + " ; smallest increase " + smallestIncrease;
+        }
+    }
+
+    /**
+     * @param move move the annealing run will use
+     * @param objective stateless objective the annealing run will use
+     */
+    public TemperatureCalibration(MoveGenerator move, ObjectiveFunction objective) {
+        if (!objective.stateless()) {
+            throw new IllegalArgumentException("Samples are scored in parallel, so the objective must be stateless");
+        }
+        this.move = move;
+        this.objective = objective;
+    }
+
+    /**
+     * @param samples number of moves to sample, defaults to 2000
+     * @return this calibration
+     */
+    public TemperatureCalibration samples(int samples) {
+        this.samples = samples;
+        return this;
+    }
+
+    /**
+     * @param initialAcceptance probability of accepting a worse candidate at the starting temperature, defaults to 0.8
+     * @return this calibration
+     */
+    public TemperatureCalibration initialAcceptance(double initialAcceptance) {
+        if (initialAcceptance <= 0 || initialAcceptance >= 1) {
+            throw new IllegalArgumentException("Acceptance probability must be between 0 and 1");
+        }
+        this.initialAcceptance = initialAcceptance;
+        return this;
+    }
+
+    /**
+     * @param finalAcceptance probability of accepting the smallest increase in score at the final temperature,
+     *                        defaults to 0.001
+     * @return this calibration
+     */
+    public TemperatureCalibration finalAcceptance(double finalAcceptance) {
+        if (finalAcceptance <= 0 || finalAcceptance >= 1) {
+            throw new IllegalArgumentException("Acceptance probability must be between 0 and 1");
+        }
+        this.finalAcceptance = finalAcceptance;
+        return this;
+    }
+
+    /**
+     * @param seed seed for the sampled moves, defaults to 0
+     * @return this calibration
+     */
+    public TemperatureCalibration seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the pool samples are taken on. Defaults to the common ForkJoin pool.
+     * @param pool pool to sample on
+     * @return this calibration
+     */
+    public TemperatureCalibration pool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Samples moves from a starting network and picks temperatures from the score increases they cause
+     * @param network starting network, not modified
+     * @return chosen temperatures. If no sampled move made the score worse, they are chosen for an increase of 1, the
+     *         smallest an integer score can make
+     */
+    public Result calibrate(TreeMap<String, BNNode> network) {
+        Rng random = new Rng(seed);
+        List<Callable<int[]>> work = new ArrayList<>();
+        for (int first = 0; first < samples; first += TASK_SAMPLES) {
+            int count = Math.min(TASK_SAMPLES, samples - first);
+            Rng taskRandom = random.split();
+            work.add(() -> sample(network, count, taskRandom));
+        }
+
+        int[] deltas = new int[samples];
+        int filled = 0;
+        for (Future<int[]> task : pool.invokeAll(work)) {
+            int[] taskDeltas;
+            try {
+                taskDeltas = task.get();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            System.arraycopy(taskDeltas, 0, deltas, filled, taskDeltas.length);
+            filled += taskDeltas.length;
+        }
+
+        int unchanged = 0;
+        int increases = 0;
+        for (int delta : deltas) {
+            if (delta == 0) unchanged++;
+            else if (delta > 0) deltas[increases++] = delta;
+        }
+        if (increases == 0) {
+            return new Result(-1 / Math.log(initialAcceptance), -1 / Math.log(finalAcceptance), samples, 0, unchanged,
+                    0, 0);
+        }
+
+        int[] positive = Arrays.copyOf(deltas, increases);
+        long sum = 0;
+        int smallest = Integer.MAX_VALUE;
+        for (int delta : positive) {
+            sum += delta;
+            smallest = Math.min(smallest, delta);
+        }
+
+        double startingTemp = solveStartingTemp(positive);
+        double finalTemp = -smallest / Math.log(finalAcceptance);
+        return new Result(startingTemp, Math.min(finalTemp, startingTemp), samples, increases, unchanged,
+                sum / (double) increases, smallest);
+    }
+
+    /**
+     * Scores moves from the starting network, rolling each back before the next
+     * @return change in score caused by each move
+     */
+    private int[] sample(TreeMap<String, BNNode> network, int count, Rng random) {
+        MoveJournal journal = new MoveJournal(copyNetwork(network));
+        int baseline = objective.score(journal);
+
+        int[] deltas = new int[count];
+        for (int i = 0; i < count; i++) {
+            move.apply(journal, random);
+            deltas[i] = objective.score(journal) - baseline;
+            journal.rollback();
+        }
+        return deltas;
+    }
+
+    /**
+     * Finds the temperature at which the mean of exp(-delta / T) over the sampled increases equals the target
+     * acceptance, by bisection on log T between bounds that bracket it
+     */
+    private double solveStartingTemp(int[] increases) {
+        double sum = 0;
+        for (int delta : increases) sum += delta;
+        double low = Math.log(-(sum / increases.length) / Math.log(initialAcceptance)) - 1;
+        double high = low + 2;
+        while (acceptance(increases, Math.exp(low)) > initialAcceptance) low -= 2;
+        while (acceptance(increases, Math.exp(high)) < initialAcceptance) high += 2;
+
+        for (int i = 0; i < 60; i++) {
+            double middle = (low + high) / 2;
+            if (acceptance(increases, Math.exp(middle)) < initialAcceptance) low = middle;
+            else high = middle;
+        }
+        return Math.exp((low + high) / 2);
+    }
+
+    private static double acceptance(int[] increases, double temperature) {
+        double sum = 0;
+        for (int delta : increases) sum += Math.exp(-delta / temperature);
+        return sum / increases.length;
+    }
+}
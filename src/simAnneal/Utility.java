@@ -9,8 +9,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Set of utility methods for manipulating Boolean networks and nodes
@@ -41,7 +42,16 @@ public class Utility {
      * @param network network to randomise
      */
     public static void netTruthsRand(TreeMap<String, BNNode> network){
-        network.forEach((K,V) -> nodeTruthsRand(V));
+        netTruthsRand(network, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Sets all the truth table outputs of a network to random values
+     * @param network network to randomise
+     * @param random random number generator
+     */
+    public static void netTruthsRand(TreeMap<String, BNNode> network, RandomGenerator random){
+        network.forEach((K,V) -> nodeTruthsRand(V, random));
     }
 
     /**
@@ -49,20 +59,30 @@ public class Utility {
      * @param node node to randomise
      */
     public static void nodeTruthsRand(BNNode node){
-        Random random = new Random();
+        nodeTruthsRand(node, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Sets the truth table outputs of a given node to a random boolean
+     * @param node node to randomise
+     * @param random random number generator
+     */
+    public static void nodeTruthsRand(BNNode node, RandomGenerator random){
         for (int i = 0; i < 1 << node.neighbours.size(); i++) {
             node.truths.set(i, random.nextBoolean());
         }
     }
 
     /**
-     * Copies a given network
+     * Copies a given network. Nodes are copied directly through the BNNode constructor, which clones the neighbour set
+     * and copies the truth table (sharing its storage until either copy is modified), rather than by round tripping
+     * through toString and valueOf.
      * @param network network to copy
      * @return copied network
      */
     public static TreeMap<String, BNNode> copyNetwork(TreeMap<String, BNNode> network){
         TreeMap<String, BNNode> output = new TreeMap<>();
-        network.forEach((K,V) -> output.put(K, BNNode.valueOf(V.toString())));
+        network.forEach((K,V) -> output.put(K, new BNNode(V.name, V.state, V.neighbours, V.truths)));
         return output;
     }
 
@@ -0,0 +1,83 @@
+package simAnneal;
+
+import bnsim.generator.NetworkGen;
+import bnsim.nodes.BNNode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Zobrist-style hashing of network truth tables and wiring. Every (node, row) pair has a pseudo-random 64 bit key, and
+ * a network's hash is the XOR of the keys of all its truth table rows that are set, together with a key for each
+ * (node, input position, input node) edge. Flipping a row changes the hash by XORing that row's key, so a hash can be
+ * kept up to date through a move in constant time per flip.
+ * <p>
+ * Keys are derived by mixing the node index and row rather than stored in a table, so hashing needs no memory
+ * proportional to the size of the truth tables. Nodes are identified by index in the natural ordering of node names.
+ */
+public class ZobristHash {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final long EDGE_SEED = 0xD1B54A32D192ED03L;
+
+    /**
+     * @param node node index
+     * @param row truth table row
+     * @return key of the row
+     */
+    public static long key(int node, int row) {
+        return NetworkGen.mix64(SEED + (((long) node << 32) | (row & 0xFFFFFFFFL)) * 0xBF58476D1CE4E5B9L);
+    }
+
+    /**
+     * @param node node index
+     * @param position position of the input in the node's neighbour set
+     * @param input node index of the input
+     * @return key of the edge
+     */
+    public static long edgeKey(int node, int position, int input) {
+        long nodeKey = NetworkGen.mix64(EDGE_SEED + node * 0xBF58476D1CE4E5B9L);
+        return NetworkGen.mix64(nodeKey + (((long) position << 32) | (input & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * Computes the hash of a network's truth tables and wiring from scratch
+     * @param network network to hash
+     * @return hash of the network
+     */
+    public static long hash(TreeMap<String, BNNode> network) {
+        Map<String, Integer> index = new HashMap<>();
+        for (String name : network.keySet()) index.put(name, index.size());
+
+        long hash = 0;
+        int node = 0;
+        for (BNNode value : network.values()) {
+            hash ^= node(node, value, index);
+            node++;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the part of a network's hash contributed by one node's truth table and inputs
+     * @param node node index
+     * @param value the node
+     * @param index node index of each node name
+     * @return hash of the node
+     */
+    static long node(int node, BNNode value, Map<String, Integer> index) {
+        long hash = 0;
+        int rows = 1 << value.neighbours.size();
+        for (int row = value.truths.nextSetBit(0); row >= 0 && row < rows; row = value.truths.nextSetBit(row + 1)) {
+            hash ^= key(node, row);
+        }
+
+        int position = 0;
+        for (String neighbour : value.neighbours) {
+            Integer input = index.get(neighbour);
+            if (input == null) throw new RuntimeException("Node " + value.name + " has unknown neighbour " + neighbour);
+            hash ^= edgeKey(node, position++, input);
+        }
+        return hash;
+    }
+}
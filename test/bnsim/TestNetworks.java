@@ -0,0 +1,84 @@
+package bnsim;
+
+import bnsim.generator.NetworkGen;
+import bnsim.nodes.BNNode;
+import bnsim.process.RunNetwork;
+
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * Random networks and traces shared by the tests, and the original BNNode simulation they are checked against
+ */
+public final class TestNetworks {
+
+    private TestNetworks() {}
+
+    /**
+     * @param random random number generator
+     * @return network of 5 to 16 nodes with 1 to 4 neighbours per node and random node states
+     */
+    public static TreeMap<String, BNNode> randomNetwork(RandomGenerator random) {
+        int size = 5 + random.nextInt(12);
+        return randomNetwork(size, 1 + random.nextInt(4), random);
+    }
+
+    /**
+     * @param size number of nodes
+     * @param neighbours number of neighbours per node, less than size
+     * @param random random number generator
+     * @return network with random node states
+     */
+    public static TreeMap<String, BNNode> randomNetwork(int size, int neighbours, RandomGenerator random) {
+        TreeMap<String, BNNode> network = NetworkGen.genRand(size, neighbours, random);
+        for (BNNode node : network.values()) node.state = random.nextBoolean();
+        return network;
+    }
+
+    /**
+     * @param size number of nodes
+     * @param steps number of iterations in the trace
+     * @param random random number generator
+     * @return random desired trace in Objective's comma separated format
+     */
+    public static String randomTrace(int size, int steps, RandomGenerator random) {
+        StringBuilder trace = new StringBuilder();
+        for (int step = 0; step < steps; step++) {
+            if (step > 0) trace.append(',');
+            for (int node = 0; node < size; node++) trace.append(random.nextBoolean() ? '1' : '0');
+        }
+        return trace.toString();
+    }
+
+    /**
+     * Scores a network by iterating its BNNodes once per step of the trace, as the original scoreNetwork did
+     */
+    public static int baselineScore(TreeMap<String, BNNode> network, String trace) {
+        int dist = 0;
+        for (String step : trace.split(",")) {
+            String state = RunNetwork.iterateStrTrace(network, 1);
+            for (int node = 0; node < step.length(); node++) {
+                if (step.charAt(node) != state.charAt(node)) dist++;
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * @return node states of a network as a String of 0s and 1s, in node order
+     */
+    public static String states(TreeMap<String, BNNode> network) {
+        StringBuilder states = new StringBuilder();
+        for (BNNode node : network.values()) states.append(node.state ? '1' : '0');
+        return states.toString();
+    }
+
+    /**
+     * @return every node of a network, states, neighbours and truth tables, one per line
+     */
+    public static String describe(TreeMap<String, BNNode> network) {
+        StringBuilder description = new StringBuilder();
+        for (BNNode node : network.values()) description.append(node).append('\n');
+        return description.toString();
+    }
+}
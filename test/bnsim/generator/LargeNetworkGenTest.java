@@ -0,0 +1,102 @@
+package bnsim.generator;
+
+import bnsim.process.BinaryFormat;
+import bnsim.process.CompiledNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that large generated networks depend only on their seed, whatever the number of threads or whether they are
+ * generated in memory or streamed to a file
+ */
+class LargeNetworkGenTest {
+    private static final int SIZE = 10000; //More than one block of nodes
+
+    @Test
+    void sameSeedSameNetwork() throws Exception {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            LargeNetworkGen generator = new LargeNetworkGen(SIZE, 90)
+                    .inDegree(LargeNetworkGen.InDegree.poisson(2.5, 8));
+            CompiledNetwork first = single.submit(generator::generate).get();
+            CompiledNetwork second = several.submit(generator::generate).get();
+            assertSameNetwork(first, second);
+
+            CompiledNetwork other = new LargeNetworkGen(SIZE, 91).inDegree(LargeNetworkGen.InDegree.poisson(2.5, 8))
+                    .generate();
+            assertNotEquals(describe(first), describe(other));
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test
+    void writtenMatchesGenerated(@TempDir Path directory) {
+        LargeNetworkGen generator = new LargeNetworkGen(SIZE, 92).inDegree(LargeNetworkGen.InDegree.scaleFree(2.2, 12));
+        Path path = directory.resolve("large.bnb");
+        generator.write(path);
+        assertSameNetwork(generator.generate(), BinaryFormat.read(path));
+    }
+
+    @Test
+    void degreesAndBiasRespected() {
+        CompiledNetwork fixed = new LargeNetworkGen(SIZE, 93).inDegree(LargeNetworkGen.InDegree.fixed(3)).generate();
+        for (int node = 0; node < fixed.size(); node++) {
+            assertEquals(3, fixed.inputCount(node));
+            Set<Integer> inputs = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                int input = fixed.input(node, i);
+                assertNotEquals(node, input);
+                assertTrue(inputs.add(input));
+            }
+        }
+
+        //Degrees are capped at size - 1
+        CompiledNetwork small = new LargeNetworkGen(4, 94).inDegree(LargeNetworkGen.InDegree.fixed(6)).generate();
+        for (int node = 0; node < small.size(); node++) assertEquals(3, small.inputCount(node));
+
+        CompiledNetwork none = new LargeNetworkGen(500, 95).bias(0).generate();
+        CompiledNetwork all = new LargeNetworkGen(500, 95).bias(1).generate();
+        for (int node = 0; node < 500; node++) {
+            for (int row = 0; row < 1 << none.inputCount(node); row++) {
+                assertFalse(none.truth(node, row));
+                assertTrue(all.truth(node, row));
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new LargeNetworkGen(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new LargeNetworkGen(10, 0).bias(1.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> new LargeNetworkGen(10, 0).inDegree(LargeNetworkGen.InDegree.fixed(31)));
+    }
+
+    private static void assertSameNetwork(CompiledNetwork expected, CompiledNetwork actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    /**
+     * @return every node's name, state, inputs and truth table rows, one node per line
+     */
+    private static String describe(CompiledNetwork network) {
+        StringBuilder description = new StringBuilder();
+        for (int node = 0; node < network.size(); node++) {
+            description.append(network.name(node)).append(network.get(node) ? " 1 " : " 0 ");
+            for (int i = 0; i < network.inputCount(node); i++) description.append(network.input(node, i)).append(' ');
+            for (int row = 0; row < 1 << network.inputCount(node); row++) {
+                description.append(network.truth(node, row) ? '1' : '0');
+            }
+            description.append('\n');
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package bnsim.nodes;
+
+import org.junit.jupiter.api.Test;
+import simAnneal.Rng;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks TruthTable against BitSet through flips, sets, copies and storage switches
+ */
+class TruthTableTest {
+
+    @Test
+    void matchesBitSetThroughFlipsAndCopies() {
+        Rng random = new Rng(40);
+        int runLength = 0;
+        int packed = 0;
+        for (int trial = 0; trial < 300; trial++) {
+            //Up to 2^15 rows, so that tables start run-length encoded from 4096 rows and switch as they are flipped
+            int rows = 1 << random.nextInt(16);
+            List<TruthTable> tables = new ArrayList<>();
+            List<BitSet> expected = new ArrayList<>();
+            tables.add(new TruthTable(rows));
+            expected.add(new BitSet());
+
+            for (int op = 0; op < 300; op++) {
+                int i = random.nextInt(tables.size());
+                TruthTable table = tables.get(i);
+                BitSet bits = expected.get(i);
+                switch (random.nextInt(8)) {
+                    case 0 -> {
+                        tables.add(table.copy());
+                        expected.add((BitSet) bits.clone());
+                    }
+                    case 1 -> {
+                        //Flip a run of rows, as structured hub functions are built
+                        int from = random.nextInt(rows);
+                        int to = Math.min(rows, from + 1 + random.nextInt(Math.max(1, rows / 8)));
+                        for (int row = from; row < to; row++) table.flip(row);
+                        bits.flip(from, to);
+                    }
+                    case 2 -> {
+                        int row = random.nextInt(rows);
+                        boolean value = random.nextBoolean();
+                        table.set(row, value);
+                        bits.set(row, value);
+                    }
+                    case 3 -> {
+                        tables.set(i, TruthTable.valueOf(bits));
+                        table = tables.get(i);
+                    }
+                    case 4 -> {
+                        tables.set(i, TruthTable.valueOfChanges(table.toChangeArray()));
+                        table = tables.get(i);
+                    }
+                    default -> {
+                        int row = random.nextInt(rows);
+                        table.flip(row);
+                        bits.flip(row);
+                    }
+                }
+                if (table.isRunLength()) runLength++;
+                else packed++;
+                assertMatches(bits, table, rows, random);
+            }
+            for (int i = 0; i < tables.size(); i++) assertMatches(expected.get(i), tables.get(i), rows, random);
+        }
+        assertTrue(runLength > 1000 && packed > 1000, runLength + " run-length and " + packed + " packed");
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        Rng random = new Rng(41);
+        for (int rows : new int[]{64, 4096, 1 << 15}) {
+            TruthTable table = new TruthTable(rows);
+            for (int row = rows / 4; row < rows / 2; row++) table.set(row);
+            BitSet before = table.toBitSet();
+
+            TruthTable copy = table.copy();
+            TruthTable copyOfCopy = copy.copy();
+            for (int i = 0; i < 50; i++) copy.flip(random.nextInt(rows));
+            assertEquals(before, table.toBitSet());
+            assertEquals(before, copyOfCopy.toBitSet());
+
+            table.flip(0);
+            before.flip(0);
+            assertEquals(before, table.toBitSet());
+            assertNotEquals(before, copyOfCopy.toBitSet());
+        }
+    }
+
+    @Test
+    void changesRoundTrip() {
+        Rng random = new Rng(42);
+        for (int trial = 0; trial < 200; trial++) {
+            BitSet bits = new BitSet();
+            int rows = 1 << random.nextInt(16);
+            for (int run = 0; run < random.nextInt(20); run++) {
+                int from = random.nextInt(rows);
+                bits.set(from, Math.min(rows, from + 1 + random.nextInt(rows)));
+            }
+
+            //Each change is a row whose output differs from the row before it
+            int[] changes = TruthTable.valueOf(bits).toChangeArray();
+            int count = 0;
+            for (int row = 0; row <= bits.length(); row++) {
+                if (bits.get(row) != (row > 0 && bits.get(row - 1))) assertEquals(row, changes[count++]);
+            }
+            assertEquals(count, changes.length);
+            assertEquals(bits, TruthTable.valueOfChanges(changes).toBitSet());
+        }
+        assertThrows(IllegalArgumentException.class, () -> TruthTable.valueOfChanges(new int[]{3}));
+        assertThrows(IllegalArgumentException.class, () -> TruthTable.valueOfChanges(new int[]{5, 2}));
+    }
+
+    private static void assertMatches(BitSet expected, TruthTable table, int rows, Rng random) {
+        assertArrayEquals(expected.toLongArray(), table.toLongArray());
+        assertEquals(expected, table.toBitSet());
+        assertEquals(expected.cardinality(), table.cardinality());
+        assertEquals(expected.length(), table.length());
+        assertEquals(TruthTable.valueOf(expected), table);
+        assertEquals(TruthTable.valueOf(expected).hashCode(), table.hashCode());
+        for (int i = 0; i < 8; i++) {
+            int row = random.nextInt(rows + 64);
+            assertEquals(expected.get(row), table.get(row));
+            assertEquals(expected.nextSetBit(row), table.nextSetBit(row));
+        }
+    }
+}
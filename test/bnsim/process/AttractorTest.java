@@ -0,0 +1,55 @@
+package bnsim.process;
+
+import bnsim.TestNetworks;
+import bnsim.nodes.BNNode;
+import org.junit.jupiter.api.Test;
+import simAnneal.Rng;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks attractors found by cycle-finding against the trajectory of the original BNNode simulation
+ */
+class AttractorTest {
+
+    @Test
+    void matchesNodeSimulation() {
+        Rng random = new Rng(50);
+        for (int trial = 0; trial < 200; trial++) {
+            //Up to 100 nodes, so that packed states span more than one word
+            int size = trial % 4 == 0 ? 65 + random.nextInt(36) : 5 + random.nextInt(12);
+            TreeMap<String, BNNode> network = TestNetworks.randomNetwork(size, 1 + random.nextInt(3), random);
+            String initial = TestNetworks.states(network);
+
+            //Walk the trajectory until a state repeats
+            TreeMap<String, BNNode> simulated = CompiledNetwork.compile(network).toNetwork();
+            Map<String, Integer> visited = new HashMap<>();
+            List<String> trajectory = new ArrayList<>();
+            String state = initial;
+            while (!visited.containsKey(state) && trajectory.size() < 20000) {
+                visited.put(state, trajectory.size());
+                trajectory.add(state);
+                state = RunNetwork.iterateStrTrace(simulated, 1);
+            }
+            if (!visited.containsKey(state)) continue; //Too long to walk, as a few large networks are
+            int transientLength = visited.get(state);
+
+            Attractor attractor = Attractor.find(network, 100000);
+            assertNotNull(attractor);
+            assertEquals(transientLength, attractor.transientLength);
+            assertEquals(trajectory.size() - transientLength, attractor.cycleLength);
+            assertEquals(String.join(",", trajectory.subList(transientLength, trajectory.size())), attractor.trace());
+            assertEquals(initial, TestNetworks.states(network));
+
+            //Only a fixed point at the initial state is found within a single step
+            boolean fixedPoint = transientLength == 0 && attractor.cycleLength == 1;
+            assertEquals(fixedPoint, Attractor.find(network, 1) != null);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package bnsim.process;
+
+import bnsim.TestNetworks;
+import bnsim.nodes.BNNode;
+import bnsim.nodes.TruthTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import simAnneal.Rng;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that networks survive a round trip through the binary network format unchanged, and that damaged files fail
+ * to load
+ */
+class BinaryFormatTest {
+
+    @Test
+    void roundTripKeepsNetwork(@TempDir Path directory) {
+        Rng random = new Rng(9);
+        for (int trial = 0; trial < 40; trial++) {
+            //Include in-degrees of 6 and above so truth tables span several words
+            int size = 10 + random.nextInt(100);
+            TreeMap<String, BNNode> network = TestNetworks.randomNetwork(size, 1 + random.nextInt(8), random);
+
+            Path path = directory.resolve("network" + trial + ".bnb");
+            BinaryFormat.write(CompiledNetwork.compile(network), path);
+            TreeMap<String, BNNode> read = BinaryFormat.read(path).toNetwork();
+
+            assertEquals(network.keySet(), read.keySet());
+            for (BNNode node : network.values()) assertEquals(node.toString(), read.get(node.name).toString());
+        }
+    }
+
+    @Test
+    void corruptFileFailsToLoad(@TempDir Path directory) throws IOException {
+        Rng random = new Rng(10);
+        TreeMap<String, BNNode> network = TestNetworks.randomNetwork(20, 3, random);
+        CompiledNetwork compiled = CompiledNetwork.compile(network);
+        Path path = directory.resolve("network.bnb");
+        BinaryFormat.write(compiled, path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        //Truncated file
+        Path truncated = directory.resolve("truncated.bnb");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(RuntimeException.class, () -> BinaryFormat.read(truncated));
+
+        //Input index past the last node
+        long nameBytes = 0;
+        for (String name : network.keySet()) nameBytes += name.getBytes(StandardCharsets.UTF_8).length;
+        int inputs = (int) (BinaryFormat.HEADER_BYTES + 2 * padded(21 * Integer.BYTES) + padded(nameBytes));
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(inputs, 1000);
+        Path corrupt = directory.resolve("corrupt.bnb");
+        Files.write(corrupt, bytes);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> BinaryFormat.read(corrupt));
+        assertTrue(e.getMessage().contains("unknown input"));
+    }
+
+    @Test
+    void hubTablesStayRunLength(@TempDir Path directory) {
+        Rng random = new Rng(11);
+        TreeMap<String, BNNode> network = hubNetwork(random);
+        CompiledNetwork compiled = CompiledNetwork.compile(network);
+        assertEquals(1, compiled.runNodes.length);
+        assertTrue(compiled.truths.length < 200);
+
+        //Same trajectory as the node simulation, before and after flipping rows of the hub table
+        TreeMap<String, BNNode> copy = new TreeMap<>();
+        network.forEach((name, node) -> copy.put(name, new BNNode(name, node.state, node.neighbours, node.truths)));
+        CompiledNetwork flipped = compiled.copy();
+        int hub = compiled.indexOf("hub");
+        for (int i = 0; i < 100; i++) {
+            int row = random.nextInt(1 << 20);
+            flipped.flipTruth(hub, row);
+            copy.get("hub").truths.flip(row);
+        }
+        for (int step = 0; step < 10; step++) {
+            assertEquals(RunNetwork.iterateStrTrace(network, 1), RunNetwork.iterateStrTrace(compiled, 1));
+            assertEquals(RunNetwork.iterateStrTrace(copy, 1), RunNetwork.iterateStrTrace(flipped, 1));
+        }
+
+        Path path = directory.resolve("hub.bnb");
+        BinaryFormat.write(flipped, path);
+        assertTrue(path.toFile().length() < 4096);
+        CompiledNetwork read = BinaryFormat.read(path);
+        assertEquals(1, read.runNodes.length);
+        assertEquals(copy.get("hub").truths, read.toNetwork().get("hub").truths);
+    }
+
+    @Test
+    void version1StillRead(@TempDir Path directory) throws IOException {
+        Rng random = new Rng(12);
+        TreeMap<String, BNNode> network = TestNetworks.randomNetwork(30, 4, random);
+        Path path = directory.resolve("network.bnb");
+        BinaryFormat.write(CompiledNetwork.compile(network), path);
+
+        //Version 1 has no run-length counts in the header, and ends at the state section when they are both zero
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer v1 = ByteBuffer.allocate(bytes.length - 8).order(ByteOrder.LITTLE_ENDIAN);
+        v1.put(bytes, 0, BinaryFormat.V1_HEADER_BYTES)
+                .put(bytes, BinaryFormat.HEADER_BYTES, bytes.length - BinaryFormat.HEADER_BYTES)
+                .putInt(4, 1);
+        Path old = directory.resolve("v1.bnb");
+        Files.write(old, v1.array());
+
+        TreeMap<String, BNNode> read = BinaryFormat.read(old).toNetwork();
+        for (BNNode node : network.values()) assertEquals(node.toString(), read.get(node.name).toString());
+    }
+
+    /**
+     * @return random network of 40 nodes, with a node "hub" reading 20 of them through a table of a few long runs
+     */
+    private static TreeMap<String, BNNode> hubNetwork(Rng random) {
+        TreeMap<String, BNNode> network = TestNetworks.randomNetwork(40, 2, random);
+        LinkedHashSet<String> inputs = new LinkedHashSet<>();
+        for (String name : network.keySet()) {
+            if (inputs.size() < 20 && random.nextBoolean()) inputs.add(name);
+        }
+        for (String name : network.keySet()) {
+            if (inputs.size() < 20) inputs.add(name);
+        }
+        int[] changes = {1000, 50000, 300000, 300001, 700000, 1 << 20};
+        network.put("hub", new BNNode("hub", true, inputs, TruthTable.valueOfChanges(changes)));
+        return network;
+    }
+
+    private static long padded(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,95 @@
+package bnsim.process;
+
+import bnsim.TestNetworks;
+import bnsim.nodes.BNNode;
+import org.junit.jupiter.api.Test;
+import simAnneal.Rng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks enumerated attractor landscapes against every state's trajectory under the original BNNode simulation
+ */
+class LandscapeTest {
+
+    @Test
+    void matchesNodeSimulation() {
+        Rng random = new Rng(60);
+        for (int trial = 0; trial < 30; trial++) {
+            //One network of 18 nodes, so that the sweep is split into several chunks
+            int size = trial == 0 ? 18 : 2 + random.nextInt(9);
+            TreeMap<String, BNNode> network = TestNetworks.randomNetwork(size, 1 + random.nextInt(size - 1), random);
+            assertLandscape(network, Landscape.enumerate(network));
+        }
+    }
+
+    @Test
+    void tooLargeRejected() {
+        TreeMap<String, BNNode> network = TestNetworks.randomNetwork(Landscape.MAX_NODES + 1, 1, new Rng(61));
+        assertThrows(IllegalArgumentException.class, () -> Landscape.enumerate(network));
+    }
+
+    /**
+     * Follows every state to its attractor with next states given by BNNode updates, and compares the attractors,
+     * ordered by their smallest state, and basin sizes with the enumerated landscape
+     */
+    private static void assertLandscape(TreeMap<String, BNNode> network, Landscape landscape) {
+        int states = 1 << network.size();
+        TreeMap<String, BNNode> simulated = CompiledNetwork.compile(network).toNetwork();
+        int[] next = new int[states];
+        for (int state = 0; state < states; state++) {
+            int node = 0;
+            for (BNNode n : simulated.values()) n.state = (state >>> node++ & 1) != 0;
+            String trace = RunNetwork.iterateStrTrace(simulated, 1);
+            for (int i = 0; i < trace.length(); i++) if (trace.charAt(i) == '1') next[state] |= 1 << i;
+        }
+
+        //Label each state with the smallest state of its attractor's cycle, walking each trajectory once
+        int[] label = new int[states];
+        int[] walked = new int[states]; //Start state of the walk that first reached each state, plus one
+        TreeMap<Integer, String> cycles = new TreeMap<>();
+        for (int start = 0; start < states; start++) {
+            if (walked[start] != 0) continue;
+            List<Integer> path = new ArrayList<>();
+            int state = start;
+            while (walked[state] == 0) {
+                walked[state] = start + 1;
+                path.add(state);
+                state = next[state];
+            }
+
+            int attractor;
+            if (walked[state] == start + 1) {
+                //Closed a new cycle, list it from its smallest state
+                int smallest = state;
+                for (int s = next[state]; s != state; s = next[s]) smallest = Math.min(smallest, s);
+                StringBuilder trace = new StringBuilder();
+                int s = smallest;
+                do {
+                    if (trace.length() > 0) trace.append(',');
+                    for (int i = 0; i < network.size(); i++) trace.append(s >>> i & 1);
+                    s = next[s];
+                } while (s != smallest);
+                cycles.put(smallest, trace.toString());
+                attractor = smallest;
+            } else {
+                attractor = label[state];
+            }
+            for (int s : path) label[s] = attractor;
+        }
+
+        List<Integer> keys = new ArrayList<>(cycles.keySet());
+        assertEquals(keys.size(), landscape.attractors.size());
+        long[] basins = new long[keys.size()];
+        for (int state = 0; state < states; state++) basins[keys.indexOf(label[state])]++;
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(cycles.get(keys.get(i)), landscape.attractors.get(i).trace());
+            assertEquals(basins[i], landscape.basinSizes[i]);
+        }
+        assertEquals(states, landscape.totalStates());
+    }
+}
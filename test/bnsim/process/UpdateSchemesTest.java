@@ -0,0 +1,144 @@
+package bnsim.process;
+
+import bnsim.TestNetworks;
+import bnsim.nodes.BNNode;
+import org.junit.jupiter.api.Test;
+import simAnneal.Rng;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks each update scheme against BNNode updates made one node at a time in the same order
+ */
+class UpdateSchemesTest {
+
+    @Test
+    void synchronousMatchesNodeSimulation() {
+        Rng random = new Rng(80);
+        for (int trial = 0; trial < 30; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            CompiledNetwork compiled = CompiledNetwork.compile(network);
+            UpdateScheme scheme = UpdateScheme.synchronous();
+            for (int step = 0; step < 10; step++) {
+                scheme.step(compiled);
+                assertEquals(RunNetwork.iterateStrTrace(network, 1), RunNetwork.iterateStrTrace(compiled, 0));
+            }
+        }
+    }
+
+    @Test
+    void blockSequentialMatchesNodeUpdates() {
+        Rng random = new Rng(81);
+        for (int trial = 0; trial < 30; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            CompiledNetwork compiled = CompiledNetwork.compile(network);
+            BNNode[] nodes = network.values().toArray(new BNNode[0]);
+
+            //Random blocks in a random order, leaving some nodes out
+            int[] order = shuffled(nodes.length, random);
+            int blockCount = 1 + random.nextInt(nodes.length);
+            int[][] blocks = new int[blockCount][];
+            int position = 0;
+            for (int b = 0; b < blockCount; b++) {
+                int length = b == blockCount - 1 ? random.nextInt(nodes.length - position + 1)
+                        : random.nextInt((nodes.length - position) / 2 + 1);
+                blocks[b] = new int[length];
+                for (int i = 0; i < length; i++) blocks[b][i] = order[position++];
+            }
+
+            UpdateScheme scheme = UpdateScheme.blockSequential(blocks);
+            for (int step = 0; step < 10; step++) {
+                scheme.step(compiled);
+                for (int[] block : blocks) {
+                    Map<String, Boolean> state = state(network);
+                    for (int node : block) nodes[node].update(state);
+                }
+                assertEquals(TestNetworks.states(network), RunNetwork.iterateStrTrace(compiled, 0));
+            }
+        }
+    }
+
+    @Test
+    void randomSchemesMatchNodeUpdatesInTheirOrder() {
+        Rng random = new Rng(82);
+        for (int trial = 0; trial < 30; trial++) {
+            //Include networks of more than one state word
+            int size = trial % 3 == 0 ? 65 + random.nextInt(60) : 5 + random.nextInt(12);
+            TreeMap<String, BNNode> sequential = TestNetworks.randomNetwork(size, 1 + random.nextInt(4), random);
+            TreeMap<String, BNNode> stochastic = CompiledNetwork.compile(sequential).toNetwork();
+            CompiledNetwork compiledSequential = CompiledNetwork.compile(sequential);
+            CompiledNetwork compiledStochastic = CompiledNetwork.compile(stochastic);
+            BNNode[] sequentialNodes = sequential.values().toArray(new BNNode[0]);
+            BNNode[] stochasticNodes = stochastic.values().toArray(new BNNode[0]);
+
+            long seed = random.nextLong();
+            UpdateScheme randomSequential = UpdateScheme.randomSequential(seed);
+            UpdateScheme stochasticAsynchronous = UpdateScheme.stochasticAsynchronous(seed);
+            UpdateSchemes.BatchedRandom sequentialRandom = new UpdateSchemes.BatchedRandom(seed);
+            UpdateSchemes.BatchedRandom stochasticRandom = new UpdateSchemes.BatchedRandom(seed);
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+
+            for (int step = 0; step < 10; step++) {
+                randomSequential.step(compiledSequential);
+                for (int i = size - 1; i > 0; i--) {
+                    int j = sequentialRandom.nextInt(i + 1);
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                }
+                for (int node : order) update(sequential, sequentialNodes[node]);
+                assertEquals(TestNetworks.states(sequential), RunNetwork.iterateStrTrace(compiledSequential, 0));
+
+                stochasticAsynchronous.step(compiledStochastic);
+                for (int i = 0; i < size; i++) update(stochastic, stochasticNodes[stochasticRandom.nextInt(size)]);
+                assertEquals(TestNetworks.states(stochastic), RunNetwork.iterateStrTrace(compiledStochastic, 0));
+            }
+        }
+    }
+
+    @Test
+    void batchedRandomInBoundsAndUniform() {
+        UpdateSchemes.BatchedRandom random = new UpdateSchemes.BatchedRandom(83);
+        int[] counts = new int[10];
+        for (int i = 0; i < 100000; i++) counts[random.nextInt(10)]++;
+        for (int count : counts) assertTrue(Math.abs(count - 10000) < 500, count + " of 100000 draws");
+        for (int bound = 1; bound < 1000; bound++) {
+            int value = random.nextInt(bound);
+            assertTrue(value >= 0 && value < bound);
+        }
+    }
+
+    private static TreeMap<String, BNNode> randomNetwork(Rng random) {
+        return TestNetworks.randomNetwork(5 + random.nextInt(12), 1 + random.nextInt(4), random);
+    }
+
+    private static int[] shuffled(int size, Rng random) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Updates one node from the network's current states
+     */
+    private static void update(TreeMap<String, BNNode> network, BNNode node) {
+        node.update(state(network));
+    }
+
+    private static Map<String, Boolean> state(TreeMap<String, BNNode> network) {
+        Map<String, Boolean> state = new HashMap<>();
+        for (BNNode node : network.values()) state.put(node.name, node.state);
+        return state;
+    }
+}
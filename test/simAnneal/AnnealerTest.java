@@ -0,0 +1,98 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.RunNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a run interrupted by a checkpoint and resumed from it ends exactly as a run that was never interrupted
+ */
+class AnnealerTest {
+    private static final int ITERATIONS = 300;
+    private static final int STOP = 120; //Iteration the interrupted run is checkpointed and stopped at
+
+    @Test
+    void resumeMatchesUninterruptedRun(@TempDir Path directory) {
+        assertResumeExact(directory, () -> CoolingSchedule.exponential(0.99), annealer -> annealer);
+    }
+
+    @Test
+    void adaptiveSchedulesResumeExactly(@TempDir Path directory) {
+        assertResumeExact(directory, () -> CoolingSchedule.targetAcceptance(0.3, 10, 0.9), annealer -> annealer);
+        assertResumeExact(directory, () -> CoolingSchedule.lam(ITERATIONS, 0.99), annealer -> annealer);
+        assertResumeExact(directory, () -> CoolingSchedule.variance(0.5, 10), annealer -> annealer);
+        assertResumeExact(directory, () -> CoolingSchedule.reheating(CoolingSchedule.exponential(0.98), 20, 2),
+                annealer -> annealer);
+    }
+
+    @Test
+    void restartsResumeExactly(@TempDir Path directory) {
+        RestartStrategy[] strategies = {RestartStrategy.fromBest(), RestartStrategy.randomTruths()};
+        for (RestartStrategy strategy : strategies) {
+            Annealer.Result[] results = assertResumeExact(directory, () -> CoolingSchedule.exponential(0.95),
+                    annealer -> annealer.minTemp(0.5).patience(25).restarts(strategy, 20));
+            assertTrue(Arrays.stream(results).anyMatch(result -> result.restarts > 1));
+        }
+    }
+
+    @Test
+    void checkpointRequiresRng(@TempDir Path directory) {
+        Annealer annealer = new Annealer(CoolingSchedule.exponential(0.99), MoveGenerator.fixed(1, 1), move -> 0)
+                .random(new Random(1)).checkpoint(directory.resolve("run.sacp"), 10);
+        assertThrows(IllegalStateException.class, () -> annealer.run(randomNetwork(new Rng(30))));
+    }
+
+    /**
+     * Runs a set of random networks uninterrupted, and again stopping at a checkpoint and resuming from it, and checks
+     * that both give the same result
+     * @param directory directory for checkpoint files
+     * @param schedule creates a new cooling schedule for each run
+     * @param options sets further options on each annealer
+     * @return results of the uninterrupted runs
+     */
+    static Annealer.Result[] assertResumeExact(Path directory, Supplier<CoolingSchedule> schedule,
+                                               UnaryOperator<Annealer> options) {
+        Annealer.Result[] results = new Annealer.Result[5];
+        for (int trial = 0; trial < results.length; trial++) {
+            Rng setup = new Rng(20 + trial);
+            TreeMap<String, BNNode> network = randomNetwork(setup);
+            String trace = randomTrace(network.size(), 4, setup);
+            Map<String, Boolean> initialState = RunNetwork.iterateMap(Utility.copyNetwork(network), 0);
+            long seed = setup.nextLong();
+            Supplier<Annealer> annealer = () -> options.apply(new Annealer(schedule.get(), MoveGenerator.fixed(2, 2),
+                    ObjectiveFunction.trace(trace, initialState)).startingTemp(20));
+
+            Annealer.Result uninterrupted = annealer.get().maxIterations(ITERATIONS).random(new Rng(seed))
+                    .run(network);
+
+            Path path = directory.resolve("run" + trial + ".sacp");
+            annealer.get().maxIterations(STOP).random(new Rng(seed)).checkpoint(path, STOP).run(network);
+            Annealer.Result resumed = annealer.get().maxIterations(ITERATIONS).resume(Checkpoint.read(path));
+
+            assertEquals(uninterrupted.bestScore, resumed.bestScore);
+            assertEquals(uninterrupted.finalScore, resumed.finalScore);
+            assertEquals(uninterrupted.startingScore, resumed.startingScore);
+            assertEquals(uninterrupted.iterations, resumed.iterations);
+            assertEquals(uninterrupted.accepted, resumed.accepted);
+            assertEquals(uninterrupted.finalTemp, resumed.finalTemp);
+            assertEquals(uninterrupted.restarts, resumed.restarts);
+            assertEquals(uninterrupted.termination, resumed.termination);
+            assertEquals(describe(uninterrupted.bestNetwork), describe(resumed.bestNetwork));
+            assertEquals(describe(uninterrupted.finalNetwork), describe(resumed.finalNetwork));
+            results[trial] = uninterrupted;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,139 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.BinaryFormat;
+import bnsim.process.CompiledNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that checkpoints of every version read back with the state they were written with
+ */
+class CheckpointTest {
+
+    @Test
+    void roundTripKeepsState(@TempDir Path directory) {
+        Rng random = new Rng(10);
+        TreeMap<String, BNNode> current = randomNetwork(random);
+        TreeMap<String, BNNode> best = randomNetwork(random);
+        double[] schedule = {3, 1, 0, 0.5};
+
+        Checkpoint written = new Checkpoint(120, 12.5, 40, 9, 4, 30, 2, 100, CompiledNetwork.compile(current),
+                CompiledNetwork.compile(best), schedule, Checkpoint.snapshot(random));
+        Path path = directory.resolve("run.sacp");
+        written.write(path);
+        long next = random.nextLong();
+
+        Checkpoint read = Checkpoint.read(path);
+        assertEquals(120, read.iteration);
+        assertEquals(12.5, read.temperature);
+        assertEquals(40, read.accepted);
+        assertEquals(9, read.currentScore);
+        assertEquals(4, read.bestScore);
+        assertEquals(30, read.startingScore);
+        assertEquals(2, read.restarts);
+        assertEquals(100, read.lastImprovement);
+        assertArrayEquals(schedule, read.schedule());
+        assertEquals(next, read.random().nextLong());
+        assertEquals(describe(current), describe(read.current()));
+        assertEquals(describe(best), describe(read.best()));
+    }
+
+    @Test
+    void earlierVersionsStillRead(@TempDir Path directory) throws IOException {
+        for (int version = 1; version <= 3; version++) {
+            Rng random = new Rng(11 + version);
+            TreeMap<String, BNNode> current = randomNetwork(random);
+            TreeMap<String, BNNode> best = randomNetwork(random);
+            double[] schedule = {7, 0.25};
+
+            Path path = directory.resolve("v" + version + ".sacp");
+            writeVersion(path, version, 75, 3.5, 5, 2, random, current, best, schedule);
+            long next = random.nextLong();
+
+            Checkpoint read = Checkpoint.read(path);
+            assertEquals(75, read.iteration);
+            assertEquals(3.5, read.temperature);
+            assertEquals(version == 1 ? 0 : 5, read.restarts);
+            assertEquals(version == 1 ? 75 : 2, read.lastImprovement);
+            if (version < 3) assertNull(read.schedule());
+            else assertArrayEquals(schedule, read.schedule());
+            assertEquals(next, read.random().nextLong());
+            assertEquals(describe(current), describe(read.current()));
+            assertEquals(describe(best), describe(read.best()));
+        }
+    }
+
+    @Test
+    void laterVersionRejected(@TempDir Path directory) throws IOException {
+        Rng random = new Rng(15);
+        Path path = directory.resolve("future.sacp");
+        writeVersion(path, Checkpoint.VERSION + 1, 1, 1, 0, 0, random, randomNetwork(random), randomNetwork(random),
+                new double[0]);
+        assertThrows(RuntimeException.class, () -> Checkpoint.read(path));
+    }
+
+    @Test
+    void onlyRngCheckpointed(@TempDir Path directory) throws IOException {
+        assertThrows(IllegalStateException.class, () -> Checkpoint.snapshot(new Random(1)));
+
+        //A serialized generator in an earlier version is only read if it is an Rng
+        Rng random = new Rng(16);
+        Path path = directory.resolve("random.sacp");
+        writeVersion(path, 3, 1, 1, 0, 0, new Random(1), randomNetwork(random), randomNetwork(random),
+                new double[0]);
+        assertThrows(RuntimeException.class, () -> Checkpoint.read(path));
+    }
+
+    /**
+     * Writes a checkpoint in the layout of a given version, with the generator serialized as versions 1 to 3 stored it.
+     * Version 1 has no restarts or lastImprovement and versions 1 and 2 have no schedule state.
+     */
+    private static void writeVersion(Path path, int version, int iteration, double temperature, int restarts,
+                                     int lastImprovement, Serializable random, TreeMap<String, BNNode> current,
+                                     TreeMap<String, BNNode> best, double[] schedule) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        }
+        byte[] serialized = bytes.toByteArray();
+        int headerBytes = version == 1 ? 48 : version == 2 ? 56 : 64;
+        int randomEnd = headerBytes + ((serialized.length + 7) & ~7);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.position(randomEnd);
+            if (version >= 3) {
+                ByteBuffer state = ByteBuffer.allocate(schedule.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (double value : schedule) state.putDouble(value);
+                state.flip();
+                while (state.hasRemaining()) channel.write(state);
+            }
+            BinaryFormat.write(CompiledNetwork.compile(current), channel);
+            long bestOffset = channel.position();
+            BinaryFormat.write(CompiledNetwork.compile(best), channel);
+
+            ByteBuffer header = ByteBuffer.allocate(randomEnd).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(Checkpoint.MAGIC).putInt(version).putInt(iteration).putInt(20).putInt(8).putInt(6)
+                    .putInt(15).putInt(serialized.length).putDouble(temperature).putLong(bestOffset);
+            if (version >= 2) header.putInt(restarts).putInt(lastImprovement);
+            if (version >= 3) header.putInt(schedule.length).putInt(0);
+            header.put(serialized).clear();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package simAnneal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the adaptive schedules' settings as given directly and through a sweep's schedule specs
+ */
+class CoolingScheduleTest {
+
+    @Test
+    void lamFactorParsedFromSpec() {
+        assertEquals(CoolingSchedule.lam(100, 0.9).next(1, 10), SweepRunner.schedule("lam:0.9", 1, 100).next(1, 10));
+        assertEquals(CoolingSchedule.lam(100, 0.999).next(1, 10), SweepRunner.schedule("lam", 1, 100).next(1, 10));
+        assertNotEquals(SweepRunner.schedule("lam", 1, 100).next(1, 10),
+                SweepRunner.schedule("lam:0.9", 1, 100).next(1, 10));
+        assertThrows(IllegalArgumentException.class, () -> CoolingSchedule.lam(100, 1.5));
+    }
+}
@@ -0,0 +1,106 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.CompiledNetwork;
+import bnsim.process.RunNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks incremental scores against full simulation of the network with RunNetwork
+ */
+class IncrementalScorerTest {
+
+    @Test
+    void incrementalScoresMatchFullSimulation() {
+        Rng random = new Rng(8);
+        for (int trial = 0; trial < 50; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 1 + random.nextInt(5), random);
+            Map<String, Boolean> initialState = RunNetwork.iterateMap(Utility.copyNetwork(network), 0);
+
+            IncrementalScorer scorer = new IncrementalScorer(network, trace);
+            ObjectiveFunction objective = ObjectiveFunction.incremental(scorer);
+            MoveJournal journal = new MoveJournal(network);
+            assertEquals(expected(network, initialState, trace), scorer.score());
+
+            for (int move = 0; move < 60; move++) {
+                NeighbourGen.genRandFixed(journal, 1 + random.nextInt(4), 3, random);
+                assertEquals(expected(network, initialState, trace), objective.score(journal));
+
+                if (random.nextBoolean()) {
+                    journal.commit();
+                    objective.accepted();
+                } else {
+                    journal.rollback();
+                    objective.rejected();
+                }
+                assertEquals(expected(network, initialState, trace), scorer.score());
+            }
+        }
+    }
+
+    @Test
+    void wiringEditsScoredIncrementally() {
+        Rng random = new Rng(18);
+        for (int trial = 0; trial < 50; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 1 + random.nextInt(5), random);
+            Map<String, Boolean> initialState = RunNetwork.iterateMap(Utility.copyNetwork(network), 0);
+
+            IncrementalScorer scorer = new IncrementalScorer(network, trace);
+            ObjectiveFunction objective = ObjectiveFunction.incremental(scorer);
+            MoveJournal journal = new MoveJournal(network);
+
+            for (int move = 0; move < 60; move++) {
+                for (int part = 0; part < 1 + random.nextInt(3); part++) {
+                    switch (random.nextInt(4)) {
+                        case 0 -> NeighbourGen.rewire(journal, 1 + random.nextInt(2), random);
+                        case 1 -> NeighbourGen.addInput(journal, 5, random);
+                        case 2 -> NeighbourGen.removeInput(journal, 0, random);
+                        default -> NeighbourGen.genRandFixed(journal, 1 + random.nextInt(3), 3, random);
+                    }
+                }
+
+                //Flips alone are scored through the scorer's own out-neighbours, rebuilt after accepted wiring edits
+                int score = journal.edits() == 0 && random.nextBoolean()
+                        ? scorer.evaluate(journal.nodes(), journal.rows(), journal.count())
+                        : objective.score(journal);
+                assertEquals(expected(network, initialState, trace), score);
+
+                if (random.nextBoolean()) {
+                    journal.commit();
+                    objective.accepted();
+                } else {
+                    journal.rollback();
+                    objective.rejected();
+                }
+                assertEquals(expected(network, initialState, trace), scorer.score());
+                assertSameNetwork(CompiledNetwork.compile(network), scorer.network());
+            }
+        }
+    }
+
+    private static void assertSameNetwork(CompiledNetwork expected, CompiledNetwork actual) {
+        for (int node = 0; node < expected.size(); node++) {
+            assertEquals(expected.inputCount(node), actual.inputCount(node));
+            for (int i = 0; i < expected.inputCount(node); i++) {
+                assertEquals(expected.input(node, i), actual.input(node, i));
+            }
+            for (int row = 0; row < 1 << expected.inputCount(node); row++) {
+                assertEquals(expected.truth(node, row), actual.truth(node, row));
+            }
+        }
+    }
+
+    private static int expected(TreeMap<String, BNNode> network, Map<String, Boolean> initialState, String trace) {
+        TreeMap<String, BNNode> baseline = Utility.copyNetwork(network);
+        Utility.setState(baseline, initialState);
+        return baselineScore(baseline, trace);
+    }
+}
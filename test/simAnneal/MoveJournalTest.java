@@ -0,0 +1,145 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.nodes.TruthTable;
+import bnsim.process.CompiledNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.TreeMap;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that moves applied through a MoveJournal, including wiring edits, roll back exactly and keep the journal's
+ * hash, out-neighbours and compiled view in step with the network
+ */
+class MoveJournalTest {
+
+    @Test
+    void rollbackRestoresNetwork() {
+        Rng random = new Rng(6);
+        for (int trial = 0; trial < 100; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            MoveJournal journal = new MoveJournal(network);
+            CompiledNetwork view = journal.compiled();
+
+            for (int move = 0; move < 30; move++) {
+                String before = describe(network);
+                long hash = journal.hash();
+                String outputs = outputs(journal);
+
+                for (int part = 0; part < 1 + random.nextInt(4); part++) {
+                    switch (random.nextInt(4)) {
+                        case 0 -> NeighbourGen.rewire(journal, 1 + random.nextInt(2), random);
+                        case 1 -> NeighbourGen.addInput(journal, 5, random);
+                        case 2 -> NeighbourGen.removeInput(journal, 0, random);
+                        default -> NeighbourGen.genRandFixed(journal, 2, 2, random);
+                    }
+                }
+                assertConsistent(journal);
+
+                if (random.nextBoolean()) {
+                    journal.rollback();
+                    assertEquals(before, describe(network));
+                    assertEquals(hash, journal.hash());
+                    assertEquals(outputs, outputs(journal));
+                } else {
+                    journal.commit();
+                }
+                assertEquals(0, journal.count());
+                assertEquals(0, journal.edits());
+                assertConsistent(journal);
+                assertSame(view, journal.compiled());
+            }
+        }
+    }
+
+    @Test
+    void hubEditsKeepView() {
+        Rng random = new Rng(9);
+        for (int trial = 0; trial < 10; trial++) {
+            //A hub of 13 inputs has 8192 rows, so its table starts run-length encoded and changes storage when edited
+            TreeMap<String, BNNode> network = randomNetwork(20, 2, random);
+            LinkedHashSet<String> inputs = new LinkedHashSet<>(network.keySet());
+            inputs.remove(network.lastKey());
+            while (inputs.size() > 13) inputs.remove(inputs.iterator().next());
+            int[] changes = {random.nextInt(4000), 4000 + random.nextInt(4000), 8000, 8192};
+            network.put("hub", new BNNode("hub", true, inputs, TruthTable.valueOfChanges(changes)));
+            MoveJournal journal = new MoveJournal(network);
+            CompiledNetwork view = journal.compiled();
+            int hub = journal.index("hub");
+
+            for (int move = 0; move < 20; move++) {
+                String before = describe(network);
+                switch (random.nextInt(3)) {
+                    case 0 -> journal.removeInput(hub, random.nextInt(journal.inputCount(hub)), random.nextBoolean());
+                    case 1 -> NeighbourGen.rewire(journal, 2, random);
+                    default -> {
+                        for (int source = 0; source < journal.size(); source++) {
+                            if (source != hub && !journal.hasInput(hub, source)) {
+                                journal.addInput(hub, source);
+                                break;
+                            }
+                        }
+                    }
+                }
+                for (int i = 0; i < 5; i++) journal.flip(hub, random.nextInt(1 << journal.inputCount(hub)));
+                assertConsistent(journal);
+
+                if (random.nextBoolean()) {
+                    journal.rollback();
+                    assertEquals(before, describe(network));
+                } else {
+                    journal.commit();
+                }
+                assertConsistent(journal);
+                assertSame(view, journal.compiled());
+            }
+        }
+    }
+
+    @Test
+    void addInputKeepsFunction() {
+        Rng random = new Rng(7);
+        for (int trial = 0; trial < 50; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 4, random);
+            MoveJournal journal = new MoveJournal(network);
+            int before = baselineScore(Utility.copyNetwork(network), trace);
+
+            for (int i = 0; i < 3; i++) NeighbourGen.addInput(journal, 6, random);
+            assertEquals(before, baselineScore(Utility.copyNetwork(network), trace));
+        }
+    }
+
+    /**
+     * Compares the journal's incrementally maintained state with the same state built from scratch
+     */
+    private static void assertConsistent(MoveJournal journal) {
+        assertEquals(ZobristHash.hash(journal.network()), journal.hash());
+        assertEquals(outputs(new MoveJournal(journal.network())), outputs(journal));
+
+        CompiledNetwork view = journal.compiled();
+        CompiledNetwork fresh = CompiledNetwork.compile(journal.network());
+        for (int node = 0; node < fresh.size(); node++) {
+            assertEquals(fresh.inputCount(node), view.inputCount(node));
+            for (int i = 0; i < fresh.inputCount(node); i++) assertEquals(fresh.input(node, i), view.input(node, i));
+            for (int row = 0; row < 1 << fresh.inputCount(node); row++) {
+                assertEquals(fresh.truth(node, row), view.truth(node, row));
+            }
+        }
+    }
+
+    private static String outputs(MoveJournal journal) {
+        StringBuilder outputs = new StringBuilder();
+        for (int node = 0; node < journal.size(); node++) {
+            int[] out = Arrays.copyOf(journal.outputs(node), journal.outputCount(node));
+            Arrays.sort(out);
+            outputs.append(Arrays.toString(out));
+        }
+        return outputs.toString();
+    }
+}
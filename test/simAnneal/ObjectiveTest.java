@@ -0,0 +1,116 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.RunNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the packed and compiled scoring paths against the original BNNode simulation with RunNetwork
+ */
+class ObjectiveTest {
+
+    @Test
+    void scoreNetworkMatchesRunNetwork() {
+        Rng random = new Rng(1);
+        for (int trial = 0; trial < 200; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 1 + random.nextInt(6), random);
+
+            TreeMap<String, BNNode> baseline = Utility.copyNetwork(network);
+            int expected = baselineScore(baseline, trace);
+
+            assertEquals(expected, Objective.scoreNetwork(network, trace));
+            assertEquals(states(baseline), states(network));
+        }
+    }
+
+    @Test
+    void traceObjectiveMatchesRunNetworkThroughMoves() {
+        Rng random = new Rng(2);
+        for (int trial = 0; trial < 50; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 1 + random.nextInt(4), random);
+            Map<String, Boolean> initialState = RunNetwork.iterateMap(Utility.copyNetwork(network), 0);
+            ObjectiveFunction objective = ObjectiveFunction.trace(trace, initialState);
+            MoveJournal journal = new MoveJournal(network);
+
+            for (int move = 0; move < 40; move++) {
+                NeighbourGen.genRandFixed(journal, 3, 2, random);
+                if (random.nextInt(4) == 0) NeighbourGen.rewire(journal, 1, random);
+
+                TreeMap<String, BNNode> baseline = Utility.copyNetwork(network);
+                Utility.setState(baseline, initialState);
+                assertEquals(baselineScore(baseline, trace), objective.score(journal));
+
+                if (random.nextBoolean()) journal.commit();
+                else journal.rollback();
+            }
+        }
+    }
+
+    @Test
+    void scoreNetworksMatchesScoreNetwork() {
+        Rng random = new Rng(3);
+        for (int trial = 0; trial < 30; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 1 + random.nextInt(4), random);
+
+            List<Map<String, Boolean>> initialStates = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(150); i++) {
+                Map<String, Boolean> state = new HashMap<>();
+                for (String name : network.keySet()) state.put(name, random.nextBoolean());
+                initialStates.add(state);
+            }
+
+            int[] scores = Objective.scoreNetworks(network, initialStates, trace);
+            for (int i = 0; i < initialStates.size(); i++) {
+                TreeMap<String, BNNode> baseline = Utility.copyNetwork(network);
+                Utility.setState(baseline, initialStates.get(i));
+                assertEquals(baselineScore(baseline, trace), scores[i]);
+            }
+        }
+    }
+
+    @Test
+    void scoreNet2MatchesTemporalAttractor() {
+        Rng random = new Rng(4);
+        for (int trial = 0; trial < 200; trial++) {
+            TreeMap<String, BNNode> network = randomNetwork(random);
+            String trace = randomTrace(network.size(), 1 + random.nextInt(4), random);
+            assertEquals(baselineAttractorScore(Utility.copyNetwork(network), trace),
+                    Objective.scoreNet2(network, trace));
+        }
+    }
+
+    /**
+     * Iterates a network's BNNodes until a state repeats and compares the cycle, from the first of its states reached,
+     * to the trace
+     */
+    private static int baselineAttractorScore(TreeMap<String, BNNode> network, String trace) {
+        List<String> visited = new ArrayList<>();
+        Map<String, Integer> firstVisit = new HashMap<>();
+        String state = RunNetwork.iterateStrTrace(network, 0);
+        while (!firstVisit.containsKey(state)) {
+            if (visited.size() > Objective.ATTRACTOR_STEPS) throw new IllegalStateException("No attractor found");
+            firstVisit.put(state, visited.size());
+            visited.add(state);
+            state = RunNetwork.iterateStrTrace(network, 1);
+        }
+        List<String> cycle = visited.subList(firstVisit.get(state), visited.size());
+
+        String[] steps = trace.split(",");
+        int dist = 0;
+        for (int i = 0; i < steps.length; i++) {
+            String cycleState = cycle.get(i % cycle.size());
+            for (int node = 0; node < steps[i].length(); node++) {
+                if (steps[i].charAt(node) != cycleState.charAt(node)) dist++;
+            }
+        }
+        return dist;
+    }
+}
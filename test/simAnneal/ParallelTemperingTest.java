@@ -0,0 +1,82 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.RunNetwork;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that parallel tempering is repeatable for a seed whatever the parallelism, and only shares stateless
+ * objectives between replicas
+ */
+class ParallelTemperingTest {
+
+    @Test
+    void sameSeedSameResult() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            Rng random = new Rng(70);
+            for (int trial = 0; trial < 5; trial++) {
+                TreeMap<String, BNNode> network = randomNetwork(random);
+                String trace = randomTrace(network.size(), 4, random);
+                Map<String, Boolean> initialState = RunNetwork.iterateMap(Utility.copyNetwork(network), 0);
+                String before = describe(network);
+                double[] ladder = ParallelTempering.geometricLadder(0.5, 20, 5);
+                ObjectiveFunction objective = ObjectiveFunction.trace(trace, initialState);
+                long seed = random.nextLong();
+
+                ParallelTempering.Result first = new ParallelTempering(ladder, MoveGenerator.fixed(2, 2), objective)
+                        .pool(single).run(network, 30, 20, seed);
+                ParallelTempering.Result second = new ParallelTempering(ladder, MoveGenerator.fixed(2, 2), objective)
+                        .pool(several).run(network, 30, 20, seed);
+
+                assertEquals(first.bestScore, second.bestScore);
+                assertArrayEquals(first.finalScores, second.finalScores);
+                assertEquals(first.swapsAttempted, second.swapsAttempted);
+                assertEquals(first.swapsAccepted, second.swapsAccepted);
+                assertEquals(describe(first.bestNetwork), describe(second.bestNetwork));
+                assertEquals(before, describe(network));
+
+                //The best score is the best network's score, and no worse than the start
+                TreeMap<String, BNNode> best = Utility.copyNetwork(first.bestNetwork);
+                Utility.setState(best, initialState);
+                assertEquals(baselineScore(best, trace), first.bestScore);
+                TreeMap<String, BNNode> start = Utility.copyNetwork(network);
+                Utility.setState(start, initialState);
+                assertTrue(first.bestScore <= baselineScore(start, trace));
+            }
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    @Test
+    void statefulObjectivesRejected() {
+        TreeMap<String, BNNode> network = randomNetwork(new Rng(71));
+        String trace = randomTrace(network.size(), 3, new Rng(72));
+        double[] ladder = ParallelTempering.geometricLadder(1, 10, 4);
+        MoveGenerator move = MoveGenerator.fixed(1, 1);
+
+        ObjectiveFunction incremental = ObjectiveFunction.incremental(new IncrementalScorer(network, trace));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelTempering(ladder, move, incremental));
+        ObjectiveFunction cached = ObjectiveFunction.cached(m -> 0, new ScoreCache(16));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelTempering(ladder, move, cached));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelTempering(new double[]{1}, move, m -> 0));
+    }
+
+    @Test
+    void geometricLadderSpansRange() {
+        double[] ladder = ParallelTempering.geometricLadder(0.5, 32, 7);
+        assertEquals(0.5, ladder[0], 1e-12);
+        assertEquals(32, ladder[6], 1e-9);
+        for (int i = 1; i < ladder.length; i++) assertEquals(2, ladder[i] / ladder[i - 1], 1e-9);
+    }
+}
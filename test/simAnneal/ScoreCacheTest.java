@@ -0,0 +1,60 @@
+package simAnneal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the cache index stays consistent through evictions, which delete entries by backward shifting
+ */
+class ScoreCacheTest {
+
+    @Test
+    void cachedScoresStayReachableThroughEvictions() {
+        Rng random = new Rng(5);
+        for (int capacity : new int[]{1, 2, 3, 7, 16, 100}) {
+            ScoreCache cache = new ScoreCache(capacity);
+            Map<Long, Integer> latest = new HashMap<>(); //Last score put for every key
+            int keys = capacity * 3 + 1;
+
+            for (int op = 0; op < 20000; op++) {
+                long key = random.nextInt(keys);
+                if (random.nextInt(3) == 0) {
+                    int score = cache.get(key);
+                    if (score != ScoreCache.MISS) assertEquals(latest.get(key), score);
+                } else {
+                    int score = random.nextInt(1000);
+                    cache.put(key, score);
+                    latest.put(key, score);
+                    assertEquals(score, cache.get(key));
+                }
+                assertTrue(cache.size() <= capacity);
+
+                if (op % 500 == 0) {
+                    int present = 0;
+                    for (Map.Entry<Long, Integer> entry : latest.entrySet()) {
+                        int score = cache.get(entry.getKey());
+                        if (score != ScoreCache.MISS) {
+                            assertEquals(entry.getValue(), score);
+                            present++;
+                        }
+                    }
+                    assertEquals(cache.size(), present);
+                }
+            }
+            assertEquals(capacity, cache.size());
+        }
+    }
+
+    @Test
+    void clearRemovesEveryEntry() {
+        ScoreCache cache = new ScoreCache(10);
+        for (long key = 0; key < 25; key++) cache.put(key, (int) key);
+        cache.clear();
+        assertEquals(0, cache.size());
+        for (long key = 0; key < 25; key++) assertEquals(ScoreCache.MISS, cache.get(key));
+    }
+}
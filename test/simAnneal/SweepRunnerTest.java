@@ -0,0 +1,79 @@
+package simAnneal;
+
+import bnsim.nodes.BNNode;
+import bnsim.process.BinaryFormat;
+import bnsim.process.CompiledNetwork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static bnsim.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a sweep resumed from a partly written output file gives the same results as one that was never
+ * interrupted
+ */
+class SweepRunnerTest {
+
+    @Test
+    void resumedSweepMatchesUninterrupted(@TempDir Path directory) throws IOException {
+        Rng random = new Rng(100);
+        TreeMap<String, BNNode> network = randomNetwork(10, 2, random);
+        Path networkPath = directory.resolve("network.bnb");
+        BinaryFormat.write(CompiledNetwork.compile(network), networkPath);
+
+        String trace = randomTrace(10, 3, random);
+        Path uninterrupted = directory.resolve("uninterrupted.csv");
+        SweepRunner sweep = new SweepRunner(config(networkPath, trace, uninterrupted));
+        assertEquals(16, sweep.runs());
+        assertEquals(16, sweep.run());
+
+        //Keep the header and five results, and cut the next result short as a crash would
+        List<String> lines = Files.readAllLines(uninterrupted, StandardCharsets.UTF_8);
+        Path interrupted = directory.resolve("interrupted.csv");
+        String partial = String.join("\n", lines.subList(0, 6)) + "\n" + lines.get(6).substring(0, 10);
+        Files.writeString(interrupted, partial, StandardCharsets.UTF_8);
+
+        SweepRunner resumed = new SweepRunner(config(networkPath, trace, interrupted));
+        assertEquals(11, resumed.run());
+        assertEquals(0, resumed.run());
+        assertEquals(results(uninterrupted), results(interrupted));
+        assertEquals(SweepRunner.HEADER, Files.readAllLines(interrupted, StandardCharsets.UTF_8).get(0));
+    }
+
+    private static Properties config(Path network, String trace, Path output) {
+        Properties config = new Properties();
+        config.setProperty("network", network.toString());
+        config.setProperty("trace", trace);
+        config.setProperty("schedule", "exponential:0.99 lam:0.99");
+        config.setProperty("startingTemp", "10 auto:0.7");
+        config.setProperty("move", "fixed:2:2 rewire:1+fixed:1:2");
+        config.setProperty("iterations", "60");
+        config.setProperty("repeats", "2");
+        config.setProperty("seed", "7");
+        config.setProperty("threads", "4");
+        config.setProperty("output", output.toString());
+        return config;
+    }
+
+    /**
+     * @return result lines of an output file without the timing column, in order of run id
+     */
+    private static TreeSet<String> results(Path output) throws IOException {
+        TreeSet<String> results = new TreeSet<>();
+        for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+            if (line.equals(SweepRunner.HEADER)) continue;
+            results.add(line.substring(0, line.lastIndexOf(',')));
+        }
+        return results;
+    }
+}